@@ -0,0 +1,74 @@
+package com.rtxmod.benchmark;
+
+import com.rtxmod.config.RTXConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Config change dispatch, from a setter through every listener's impact check
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigDispatchBenchmark {
+    
+    // The renderer, pipelines and tuners each register one in game
+    @Param({"1", "8", "32"})
+    public int listenerCount;
+    
+    private RTXConfig config;
+    private int samples = 4;
+    
+    // Written by the listeners and returned, so the JIT can't drop their work
+    private int invalidations = 0;
+    
+    @Setup
+    public void setup() {
+        config = RTXConfig.createDefaults();
+        
+        // Listeners branch on the impact like the real ones, without touching GL
+        for (int i = 0; i < listenerCount; i++) {
+            config.addListener(setting -> {
+                switch (setting.getImpact()) {
+                    case SHADER_VARIANTS, GBUFFER_LAYOUT -> invalidations += 2;
+                    case FRAME_BUFFERS, TEMPORAL_HISTORY -> invalidations++;
+                    default -> { }
+                }
+            });
+        }
+    }
+    
+    @Benchmark
+    public int notifyChanged() {
+        config.notifyChanged(RTXConfig.Setting.RENDER_SCALE);
+        return invalidations;
+    }
+    
+    // Alternates the value so every call really changes it and notifies
+    @Benchmark
+    public int setterChange() {
+        samples = samples == 4 ? 8 : 4;
+        config.setSamplesPerPixel(samples);
+        return invalidations;
+    }
+    
+    @Benchmark
+    public int setterUnchanged() {
+        config.setSamplesPerPixel(config.getSamplesPerPixel());
+        return config.getSamplesPerPixel();
+    }
+}
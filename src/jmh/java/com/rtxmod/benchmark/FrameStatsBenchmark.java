@@ -0,0 +1,88 @@
+package com.rtxmod.benchmark;
+
+import com.rtxmod.rendering.profiling.FrameStats;
+import com.rtxmod.rendering.profiling.GPUProfiler;
+import com.rtxmod.rendering.profiling.LogHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame statistics bookkeeping, which runs on the render thread every frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameStatsBenchmark {
+    
+    // Precomputed so the benchmark measures recording, not the random generator
+    private static final int SAMPLE_COUNT = 4096;
+    
+    // Share of frames that are spikes, each one goes through phase attribution
+    @Param({"0.0", "0.02"})
+    public double spikeRate;
+    
+    private final float[] frameTimesMs = new float[SAMPLE_COUNT];
+    private final long[] uploadBytes = new long[SAMPLE_COUNT];
+    private int index = 0;
+    
+    private FrameStats frameStats;
+    private LogHistogram histogram;
+    
+    // Never initialized, so its phase times read as zero without a GL context
+    private GPUProfiler profiler;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            float frameMs = 6.0f + (float) random.nextGaussian() * 0.5f;
+            if (random.nextDouble() < spikeRate) {
+                frameMs += 10.0f + random.nextFloat() * 20.0f;
+            }
+            frameTimesMs[i] = Math.max(0.1f, frameMs);
+            uploadBytes[i] = random.nextInt(4) == 0 ? random.nextInt(1 << 20) : 0;
+        }
+        
+        frameStats = new FrameStats();
+        histogram = new LogHistogram(0.01, 20);
+        profiler = new GPUProfiler();
+    }
+    
+    private int next() {
+        index = (index + 1) & (SAMPLE_COUNT - 1);
+        return index;
+    }
+    
+    @Benchmark
+    public void recordFrame() {
+        int i = next();
+        frameStats.recordFrame(frameTimesMs[i], profiler, uploadBytes[i]);
+    }
+    
+    @Benchmark
+    public long histogramRecord() {
+        histogram.record(frameTimesMs[next()]);
+        return histogram.getCount();
+    }
+    
+    @Benchmark
+    public double histogramPercentile() {
+        histogram.record(frameTimesMs[next()]);
+        return histogram.getPercentile(99);
+    }
+}
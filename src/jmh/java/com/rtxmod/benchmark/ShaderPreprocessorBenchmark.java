@@ -0,0 +1,95 @@
+package com.rtxmod.benchmark;
+
+import com.rtxmod.rendering.shaders.ShaderPreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * #include expansion and define injection, run for every program permutation a build compiles
+ * Sources are synthetic: a kernel including a chain of libraries, served from memory
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShaderPreprocessorBenchmark {
+    
+    private static final String ROOT = "/assets/rtx-mod/shaders/";
+    private static final String KERNEL = ROOT + "kernel.comp";
+    
+    @Param({"4", "16"})
+    public int libraryCount;
+    
+    @Param({"100", "400"})
+    public int linesPerFile;
+    
+    private final Map<String, String> sources = new HashMap<>();
+    private final Map<String, String> defines = new LinkedHashMap<>();
+    private ShaderPreprocessor preprocessor;
+    
+    @Setup
+    public void setup() {
+        // Each library includes the previous one, the kernel includes all of them
+        StringBuilder kernel = new StringBuilder("#version 460\n");
+        for (int lib = 0; lib < libraryCount; lib++) {
+            StringBuilder library = new StringBuilder();
+            if (lib > 0) {
+                library.append("#include \"lib/lib").append(lib - 1).append(".glsl\"\n");
+            }
+            appendBody(library, "lib" + lib);
+            sources.put(ROOT + "lib/lib" + lib + ".glsl", library.toString());
+            kernel.append("#include \"lib/lib").append(lib).append(".glsl\"\n");
+        }
+        appendBody(kernel, "main");
+        sources.put(KERNEL, kernel.toString());
+        
+        // About what the renderer sets for a ray tracing program
+        defines.put("RTX_MAX_BOUNCES", "3");
+        defines.put("RTX_SAMPLES_PER_PIXEL", "4");
+        defines.put("RTX_REFLECTION_QUALITY", "1");
+        defines.put("RTX_ENABLE_GI", "1");
+        defines.put("RTX_ENABLE_REFLECTIONS", "1");
+        defines.put("RTX_ENABLE_AO", "1");
+        defines.put("RTX_ENABLE_SHADOWS", "1");
+        defines.put("RTX_LOCAL_SIZE_X", "16");
+        defines.put("RTX_LOCAL_SIZE_Y", "8");
+        defines.put("RTX_HAS_SUBGROUP_ARITHMETIC", "1");
+        
+        preprocessor = new ShaderPreprocessor(ROOT, path -> {
+            String source = sources.get(path);
+            if (source == null) {
+                throw new IOException("missing " + path);
+            }
+            return source;
+        });
+    }
+    
+    private void appendBody(StringBuilder source, String name) {
+        for (int line = 0; line < linesPerFile; line++) {
+            source.append("    float ").append(name).append("_v").append(line)
+                .append(" = texelFetch(uInput, ivec2(gl_GlobalInvocationID.xy), 0).r * ").append(line).append(".0;\n");
+        }
+    }
+    
+    @Benchmark
+    public int process() throws IOException {
+        return preprocessor.process(KERNEL, defines).getSource().length();
+    }
+}
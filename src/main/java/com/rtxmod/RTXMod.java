@@ -1,6 +1,7 @@
 package com.rtxmod;
 
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.loader.api.FabricLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,4 +19,10 @@ public class RTXMod implements ModInitializer {
         // Register any server-side components here
         // Note: Most RTX functionality will be client-side only
     }
+    
+    public static String getVersion() {
+        return FabricLoader.getInstance().getModContainer(MOD_ID)
+            .map(container -> container.getMetadata().getVersion().getFriendlyString())
+            .orElse("unknown");
+    }
 }
@@ -30,11 +30,11 @@ public class RTXModClient implements ClientModInitializer {
     public void onInitializeClient() {
         RTXMod.LOGGER.info("Initializing RTX Mod - Client Side");
         
-        // Initialize configuration first
+        // Initialize configuration first, loaded from disk and shared with the renderer
         config = new RTXConfig();
         
         // Initialize the RTX renderer
-        rtxRenderer = new RTXRenderer();
+        rtxRenderer = new RTXRenderer(config);
         
         // Register key bindings, events, etc.
         registerKeyBindings();
@@ -77,6 +77,7 @@ public class RTXModClient implements ClientModInitializer {
             if (rtxRenderer != null) {
                 rtxRenderer.cleanup();
             }
+            config.saveConfig();
         });
         
         // Register other client-side event handlers here
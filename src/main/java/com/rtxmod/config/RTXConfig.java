@@ -1,14 +1,93 @@
 package com.rtxmod.config;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.InstanceCreator;
+import com.google.gson.JsonParseException;
+import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.profiling.events.ConfigChangeEvent;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
- * Configuration class for RTX settings
+ * Configuration class for RTX settings, persisted as JSON in the Fabric config directory
+ * Setters notify listeners with the setting that changed, so each consumer invalidates only what it affects
  */
 public class RTXConfig {
     
+    private static final String FILE_NAME = "rtx-mod.json";
+    
+    // Quality defaults, the auto-tuner only replaces values that are still at these or at its own last choice
+    public static final int DEFAULT_MAX_RAY_BOUNCES = 3;
+    public static final int DEFAULT_SAMPLES_PER_PIXEL = 4;
+    public static final int DEFAULT_RENDER_SCALE = 100;
+    
+    // What has to be redone when a setting changes
+    public enum Impact {
+        NONE,               // Read every frame, nothing to invalidate
+        SHADER_VARIANTS,    // Baked into shader defines
+        TEMPORAL_HISTORY,   // Accumulated history no longer matches
+        FRAME_BUFFERS,      // Target sizes or the set of targets
+        GBUFFER_LAYOUT      // Attachment formats and the shaders that write them
+    }
+    
+    public enum Setting {
+        RAY_TRACING_ENABLED(Impact.NONE),
+        MAX_RAY_BOUNCES(Impact.SHADER_VARIANTS),
+        SAMPLES_PER_PIXEL(Impact.SHADER_VARIANTS),
+        RAY_TRACING_DISTANCE(Impact.NONE),
+        GLOBAL_ILLUMINATION(Impact.SHADER_VARIANTS),
+        REFLECTIONS(Impact.SHADER_VARIANTS),
+        REFLECTION_QUALITY(Impact.SHADER_VARIANTS),
+        AMBIENT_OCCLUSION(Impact.SHADER_VARIANTS),
+        RAY_TRACED_SHADOWS(Impact.SHADER_VARIANTS),
+        SHADOW_SAMPLES(Impact.NONE),
+        AUTO_EXPOSURE(Impact.NONE),
+        EXPOSURE_COMPENSATION(Impact.NONE),
+        TEMPORAL_UPSAMPLING(Impact.FRAME_BUFFERS),
+        DENOISING(Impact.TEMPORAL_HISTORY),
+        FUSED_POST_PROCESSING(Impact.NONE),
+        COMPACT_GBUFFER(Impact.GBUFFER_LAYOUT),
+        RENDER_SCALE(Impact.FRAME_BUFFERS),
+        VRAM_BUDGET(Impact.NONE),
+        SHADER_CACHE(Impact.NONE),
+        DENOISER_ITERATIONS(Impact.NONE),
+        SHADER_SOURCE_DIRECTORY(Impact.NONE),
+        AUTO_TUNE(Impact.NONE);
+        
+        private final Impact impact;
+        
+        Setting(Impact impact) {
+            this.impact = impact;
+        }
+        
+        public Impact getImpact() {
+            return impact;
+        }
+    }
+    
+    @FunctionalInterface
+    public interface Listener {
+        void onConfigChanged(Setting setting);
+    }
+    
+    // Not serialized
+    private final transient List<Listener> listeners = new CopyOnWriteArrayList<>();
+    
     // Ray tracing settings
     public boolean enableRayTracing = false;
-    public int maxRayBounces = 3;
-    public int samplesPerPixel = 4;
+    public int maxRayBounces = DEFAULT_MAX_RAY_BOUNCES;
+    public int samplesPerPixel = DEFAULT_SAMPLES_PER_PIXEL;
     public float rayTracingDistance = 128.0f;
     
     // Global illumination settings
@@ -29,36 +108,150 @@ public class RTXConfig {
     // Shadow settings
     public boolean enableRayTracedShadows = true;
     public float shadowStrength = 1.0f;
-    public int shadowSamples = 8;
+    public int shadowSamples = 8; // Shadow rays per light sample, a uniform of the trace kernel
+    
+    // Exposure settings
+    public boolean enableAutoExposure = true;
+    public float exposureCompensation = 0.0f; // In EV stops, applied on top of auto-exposure
     
     // Performance settings
     public boolean enableTemporalUpsampling = true;
     public boolean enableDenoising = true;
-    public int renderScale = 100; // Percentage of screen resolution
+    public boolean enableFusedPostProcessing = true; // Disable to run each post stage as its own pass
+    public boolean useCompactGBuffer = false; // Octahedral normals and packed material
+    public int renderScale = DEFAULT_RENDER_SCALE; // Percentage of screen resolution
+    public int vramBudgetMB = 0; // 0 = half of the dedicated video memory reported by the driver
+    public boolean enableShaderCache = true; // Reuse linked program binaries across launches
+    public boolean enableAutoTune = true; // Benchmark workgroup sizes and presets on first launch and after driver changes, presets never replace hand-set quality
+    public int autoTuneTargetFps = 60;
+    public String autoTunedDriver = ""; // Driver signature of the last tuning run, cleared to tune again
+    public String autoTunedPreset = ""; // Preset the last tuning run applied, quality that no longer matches it was set by hand
+    
+    // Denoiser settings
+    public int denoiserIterations = 5;
+    public float denoiserColorPhi = 4.0f;
+    public float denoiserNormalPhi = 128.0f;
+    public float denoiserDepthPhi = 1.0f;
     
     // Debug settings
     public boolean showDebugInfo = false;
     public boolean wireframeMode = false;
     public boolean showBoundingBoxes = false;
+    public String shaderSourceDirectory = ""; // Development: load shaders from here and rebuild them on save, empty disables, applied on next initialize
     
     public RTXConfig() {
         // Load configuration from file if it exists
         loadConfig();
     }
     
+    private RTXConfig(boolean load) {
+        if (load) {
+            loadConfig();
+        }
+    }
+    
+    // Defaults without reading or writing the config file, for code running outside the game such as benchmarks
+    public static RTXConfig createDefaults() {
+        return new RTXConfig(false);
+    }
+    
+    public static Path getConfigPath() {
+        return FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+    }
+    
     public void loadConfig() {
-        // TODO: Implement config file loading
-        // For now, use default values
+        Path path = getConfigPath();
+        if (!Files.isRegularFile(path)) {
+            RTXMod.LOGGER.info("No RTX config at {}, using defaults", path);
+            return;
+        }
+        
+        // Fill this instance, keys missing from the file keep their defaults
+        Gson gson = new GsonBuilder()
+            .registerTypeAdapter(RTXConfig.class, (InstanceCreator<RTXConfig>) type -> this)
+            .create();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            gson.fromJson(reader, RTXConfig.class);
+            clampValues();
+            RTXMod.LOGGER.info("Loaded RTX config from {}", path);
+        } catch (IOException | JsonParseException e) {
+            RTXMod.LOGGER.error("Failed to load RTX config from {}, using defaults: ", path, e);
+            resetToDefaults();
+        }
     }
     
     public void saveConfig() {
-        // TODO: Implement config file saving
+        Path path = getConfigPath();
+        Path tempFile = path.resolveSibling(FILE_NAME + ".tmp");
+        
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(this, writer);
+            }
+            // A crash mid-write never leaves a truncated config behind
+            try {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Some file systems can't rename atomically, a plain replace still beats not saving
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            RTXMod.LOGGER.error("Failed to save RTX config to {}: ", path, e);
+        }
+    }
+    
+    // Hand-edited files go through the same limits as the setters
+    private void clampValues() {
+        maxRayBounces = Math.max(1, Math.min(maxRayBounces, 10));
+        samplesPerPixel = Math.max(1, Math.min(samplesPerPixel, 64));
+        rayTracingDistance = Math.max(16.0f, Math.min(rayTracingDistance, 512.0f));
+        reflectionQuality = Math.max(0, Math.min(reflectionQuality, 2));
+        shadowSamples = Math.max(1, Math.min(shadowSamples, 64));
+        exposureCompensation = Math.max(-5.0f, Math.min(exposureCompensation, 5.0f));
+        renderScale = Math.max(50, Math.min(renderScale, 200));
+        vramBudgetMB = Math.max(0, vramBudgetMB);
+        autoTuneTargetFps = Math.max(30, Math.min(autoTuneTargetFps, 240));
+        if (autoTunedDriver == null) {
+            autoTunedDriver = "";
+        }
+        if (autoTunedPreset == null) {
+            autoTunedPreset = "";
+        }
+        denoiserIterations = Math.max(1, Math.min(denoiserIterations, 8));
+        if (shaderSourceDirectory == null) {
+            shaderSourceDirectory = "";
+        }
+    }
+    
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    // Also for code that writes the public fields directly
+    public void notifyChanged(Setting setting) {
+        ConfigChangeEvent event = new ConfigChangeEvent();
+        event.begin();
+        
+        for (Listener listener : listeners) {
+            listener.onConfigChanged(setting);
+        }
+        
+        if (event.shouldCommit()) {
+            event.setting = setting.name();
+            event.impact = setting.getImpact().name();
+            event.commit();
+        }
     }
     
     public void resetToDefaults() {
         enableRayTracing = false;
-        maxRayBounces = 3;
-        samplesPerPixel = 4;
+        maxRayBounces = DEFAULT_MAX_RAY_BOUNCES;
+        samplesPerPixel = DEFAULT_SAMPLES_PER_PIXEL;
         rayTracingDistance = 128.0f;
         
         enableGlobalIllumination = true;
@@ -77,13 +270,34 @@ public class RTXConfig {
         shadowStrength = 1.0f;
         shadowSamples = 8;
         
+        enableAutoExposure = true;
+        exposureCompensation = 0.0f;
+        
         enableTemporalUpsampling = true;
         enableDenoising = true;
-        renderScale = 100;
+        enableFusedPostProcessing = true;
+        useCompactGBuffer = false;
+        renderScale = DEFAULT_RENDER_SCALE;
+        vramBudgetMB = 0;
+        enableShaderCache = true;
+        enableAutoTune = true;
+        autoTuneTargetFps = 60;
+        autoTunedDriver = "";
+        autoTunedPreset = "";
+        
+        denoiserIterations = 5;
+        denoiserColorPhi = 4.0f;
+        denoiserNormalPhi = 128.0f;
+        denoiserDepthPhi = 1.0f;
         
         showDebugInfo = false;
         wireframeMode = false;
         showBoundingBoxes = false;
+        shaderSourceDirectory = "";
+        
+        for (Setting setting : Setting.values()) {
+            notifyChanged(setting);
+        }
     }
     
     // Getters and setters
@@ -92,7 +306,10 @@ public class RTXConfig {
     }
     
     public void setRayTracingEnabled(boolean enabled) {
-        this.enableRayTracing = enabled;
+        if (enableRayTracing != enabled) {
+            enableRayTracing = enabled;
+            notifyChanged(Setting.RAY_TRACING_ENABLED);
+        }
     }
     
     public int getMaxRayBounces() {
@@ -100,7 +317,11 @@ public class RTXConfig {
     }
     
     public void setMaxRayBounces(int bounces) {
-        this.maxRayBounces = Math.max(1, Math.min(bounces, 10));
+        int clamped = Math.max(1, Math.min(bounces, 10));
+        if (maxRayBounces != clamped) {
+            maxRayBounces = clamped;
+            notifyChanged(Setting.MAX_RAY_BOUNCES);
+        }
     }
     
     public int getSamplesPerPixel() {
@@ -108,6 +329,243 @@ public class RTXConfig {
     }
     
     public void setSamplesPerPixel(int samples) {
-        this.samplesPerPixel = Math.max(1, Math.min(samples, 64));
+        int clamped = Math.max(1, Math.min(samples, 64));
+        if (samplesPerPixel != clamped) {
+            samplesPerPixel = clamped;
+            notifyChanged(Setting.SAMPLES_PER_PIXEL);
+        }
+    }
+    
+    public boolean isDenoisingEnabled() {
+        return enableDenoising;
+    }
+    
+    public boolean isAutoExposureEnabled() {
+        return enableAutoExposure;
+    }
+    
+    public void setAutoExposureEnabled(boolean enabled) {
+        if (enableAutoExposure != enabled) {
+            enableAutoExposure = enabled;
+            notifyChanged(Setting.AUTO_EXPOSURE);
+        }
+    }
+    
+    public float getExposureCompensation() {
+        return exposureCompensation;
+    }
+    
+    public void setExposureCompensation(float stops) {
+        float clamped = Math.max(-5.0f, Math.min(stops, 5.0f));
+        if (exposureCompensation != clamped) {
+            exposureCompensation = clamped;
+            notifyChanged(Setting.EXPOSURE_COMPENSATION);
+        }
+    }
+    
+    public boolean isTemporalUpsamplingEnabled() {
+        return enableTemporalUpsampling;
+    }
+    
+    public void setTemporalUpsamplingEnabled(boolean enabled) {
+        if (enableTemporalUpsampling != enabled) {
+            enableTemporalUpsampling = enabled;
+            notifyChanged(Setting.TEMPORAL_UPSAMPLING);
+        }
+    }
+    
+    public int getRenderScale() {
+        return renderScale;
+    }
+    
+    public void setRenderScale(int scale) {
+        int clamped = Math.max(50, Math.min(scale, 200));
+        if (renderScale != clamped) {
+            renderScale = clamped;
+            notifyChanged(Setting.RENDER_SCALE);
+        }
+    }
+    
+    public float getRayTracingDistance() {
+        return rayTracingDistance;
+    }
+    
+    public void setRayTracingDistance(float distance) {
+        float clamped = Math.max(16.0f, Math.min(distance, 512.0f));
+        if (rayTracingDistance != clamped) {
+            rayTracingDistance = clamped;
+            notifyChanged(Setting.RAY_TRACING_DISTANCE);
+        }
+    }
+    
+    public boolean isShaderCacheEnabled() {
+        return enableShaderCache;
+    }
+    
+    public void setShaderCacheEnabled(boolean enabled) {
+        if (enableShaderCache != enabled) {
+            enableShaderCache = enabled;
+            notifyChanged(Setting.SHADER_CACHE);
+        }
+    }
+    
+    public int getVramBudgetMB() {
+        return vramBudgetMB;
+    }
+    
+    public void setVramBudgetMB(int budgetMB) {
+        int clamped = Math.max(0, budgetMB);
+        if (vramBudgetMB != clamped) {
+            vramBudgetMB = clamped;
+            notifyChanged(Setting.VRAM_BUDGET);
+        }
+    }
+    
+    public void setDenoisingEnabled(boolean enabled) {
+        if (enableDenoising != enabled) {
+            enableDenoising = enabled;
+            notifyChanged(Setting.DENOISING);
+        }
+    }
+    
+    public boolean isFusedPostProcessingEnabled() {
+        return enableFusedPostProcessing;
+    }
+    
+    public void setFusedPostProcessingEnabled(boolean enabled) {
+        if (enableFusedPostProcessing != enabled) {
+            enableFusedPostProcessing = enabled;
+            notifyChanged(Setting.FUSED_POST_PROCESSING);
+        }
+    }
+    
+    public boolean isCompactGBufferEnabled() {
+        return useCompactGBuffer;
+    }
+    
+    public void setCompactGBufferEnabled(boolean enabled) {
+        if (useCompactGBuffer != enabled) {
+            useCompactGBuffer = enabled;
+            notifyChanged(Setting.COMPACT_GBUFFER);
+        }
+    }
+    
+    public int getDenoiserIterations() {
+        return denoiserIterations;
+    }
+    
+    public void setDenoiserIterations(int iterations) {
+        int clamped = Math.max(1, Math.min(iterations, 8));
+        if (denoiserIterations != clamped) {
+            denoiserIterations = clamped;
+            notifyChanged(Setting.DENOISER_ITERATIONS);
+        }
+    }
+    
+    public boolean isAutoTuneEnabled() {
+        return enableAutoTune;
+    }
+    
+    public void setAutoTuneEnabled(boolean enabled) {
+        if (enableAutoTune != enabled) {
+            enableAutoTune = enabled;
+            notifyChanged(Setting.AUTO_TUNE);
+        }
+    }
+    
+    public int getAutoTuneTargetFps() {
+        return autoTuneTargetFps;
+    }
+    
+    public void setAutoTuneTargetFps(int fps) {
+        int clamped = Math.max(30, Math.min(fps, 240));
+        if (autoTuneTargetFps != clamped) {
+            autoTuneTargetFps = clamped;
+            notifyChanged(Setting.AUTO_TUNE);
+        }
+    }
+    
+    public String getAutoTunedDriver() {
+        return autoTunedDriver;
+    }
+    
+    // Bookkeeping for the tuner, not a user setting
+    public void setAutoTunedDriver(String driverSignature) {
+        autoTunedDriver = driverSignature != null ? driverSignature : "";
+    }
+    
+    public String getAutoTunedPreset() {
+        return autoTunedPreset;
+    }
+    
+    public void setAutoTunedPreset(String preset) {
+        autoTunedPreset = preset != null ? preset : "";
+    }
+    
+    // Samples, bounces and scale have never been changed from their defaults
+    public boolean isQualityAtDefaults() {
+        return samplesPerPixel == DEFAULT_SAMPLES_PER_PIXEL && maxRayBounces == DEFAULT_MAX_RAY_BOUNCES
+            && renderScale == DEFAULT_RENDER_SCALE;
+    }
+    
+    public String getShaderSourceDirectory() {
+        return shaderSourceDirectory;
+    }
+    
+    public void setShaderSourceDirectory(String directory) {
+        String trimmed = directory != null ? directory.trim() : "";
+        if (!shaderSourceDirectory.equals(trimmed)) {
+            shaderSourceDirectory = trimmed;
+            notifyChanged(Setting.SHADER_SOURCE_DIRECTORY);
+        }
+    }
+    
+    // Lighting features baked into shader variants
+    public void setGlobalIlluminationEnabled(boolean enabled) {
+        if (enableGlobalIllumination != enabled) {
+            enableGlobalIllumination = enabled;
+            notifyChanged(Setting.GLOBAL_ILLUMINATION);
+        }
+    }
+    
+    public void setReflectionsEnabled(boolean enabled) {
+        if (enableReflections != enabled) {
+            enableReflections = enabled;
+            notifyChanged(Setting.REFLECTIONS);
+        }
+    }
+    
+    public void setReflectionQuality(int quality) {
+        int clamped = Math.max(0, Math.min(quality, 2));
+        if (reflectionQuality != clamped) {
+            reflectionQuality = clamped;
+            notifyChanged(Setting.REFLECTION_QUALITY);
+        }
+    }
+    
+    public void setAmbientOcclusionEnabled(boolean enabled) {
+        if (enableAmbientOcclusion != enabled) {
+            enableAmbientOcclusion = enabled;
+            notifyChanged(Setting.AMBIENT_OCCLUSION);
+        }
+    }
+    
+    public void setRayTracedShadowsEnabled(boolean enabled) {
+        if (enableRayTracedShadows != enabled) {
+            enableRayTracedShadows = enabled;
+            notifyChanged(Setting.RAY_TRACED_SHADOWS);
+        }
+    }
+    
+    public int getShadowSamples() {
+        return shadowSamples;
+    }
+    
+    public void setShadowSamples(int samples) {
+        int clamped = Math.max(1, Math.min(samples, 64));
+        if (shadowSamples != clamped) {
+            shadowSamples = clamped;
+            notifyChanged(Setting.SHADOW_SAMPLES);
+        }
     }
 }
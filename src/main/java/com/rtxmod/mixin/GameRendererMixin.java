@@ -25,6 +25,7 @@ public class GameRendererMixin {
             if (RTXModClient.getToggleRTXKeyBinding() != null && RTXModClient.getToggleRTXKeyBinding().wasPressed()) {
                 boolean currentState = RTXModClient.getConfig().isRayTracingEnabled();
                 RTXModClient.getConfig().setRayTracingEnabled(!currentState);
+                RTXModClient.getConfig().saveConfig();
                 
                 if (currentState) {
                     net.minecraft.client.MinecraftClient.getInstance().inGameHud.getChatHud()
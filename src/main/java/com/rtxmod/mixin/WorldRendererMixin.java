@@ -7,7 +7,7 @@ import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.render.LightmapTextureManager;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.util.math.Matrix4f;
+import org.joml.Matrix4f;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -28,11 +28,22 @@ public class WorldRendererMixin {
         RTXRenderer renderer = RTXModClient.getRTXRenderer();
         
         if (renderer != null && renderer.isInitialized() && RTXModClient.getConfig().isRayTracingEnabled()) {
-            // Get view matrix from camera
-            Matrix4f viewMatrix = matrices.peek().getPositionMatrix().copy();
-            
-            // Render RTX frame
-            renderer.render(viewMatrix, projectionMatrix, tickDelta);
+            // The stack's matrix is only read during the call, no copy needed
+            renderer.render(matrices.peek().getPositionMatrix(), projectionMatrix, tickDelta);
+        }
+    }
+    
+    @Inject(method = "render", at = @At("TAIL"))
+    private void onWorldRenderEnd(MatrixStack matrices, float tickDelta, long limitTime, 
+                                boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, 
+                                LightmapTextureManager lightmapTextureManager, Matrix4f projectionMatrix, 
+                                CallbackInfo ci) {
+        
+        RTXRenderer renderer = RTXModClient.getRTXRenderer();
+        
+        if (renderer != null && renderer.isInitialized()) {
+            // The traced frame replaces the world, hand and HUD are still drawn on top
+            renderer.present();
         }
     }
 }
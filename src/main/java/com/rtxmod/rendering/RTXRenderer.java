@@ -4,53 +4,143 @@ import com.rtxmod.RTXMod;
 import com.rtxmod.config.RTXConfig;
 import com.rtxmod.rendering.pipeline.RayTracingPipeline;
 import com.rtxmod.rendering.pipeline.PostProcessingPipeline;
+import com.rtxmod.rendering.buffers.AsyncReadback;
+import com.rtxmod.rendering.buffers.GBufferLayout;
+import com.rtxmod.rendering.buffers.GPUMemoryTracker;
 import com.rtxmod.rendering.buffers.RTXFrameBuffer;
+import com.rtxmod.rendering.buffers.TexturePool;
+import com.rtxmod.rendering.profiling.AllocationMonitor;
+import com.rtxmod.rendering.profiling.FrameStats;
+import com.rtxmod.rendering.profiling.GPUProfiler;
+import com.rtxmod.rendering.profiling.RenderPhase;
 import com.rtxmod.rendering.shaders.RTXShaderManager;
+import com.rtxmod.rendering.shaders.ShaderBinaryCache;
 import com.rtxmod.rendering.scene.SceneManager;
+import com.rtxmod.rendering.tuning.AutoTuner;
+import com.rtxmod.rendering.tuning.WorkgroupTuner;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.GLStateCache;
 import com.rtxmod.util.RTXCapabilities;
 
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.gl.Framebuffer;
-import net.minecraft.util.math.Matrix4f;
 import org.joml.Matrix4fc;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL46;
 
+import java.nio.file.Path;
+
 /**
  * Main RTX Renderer class
  * Handles hardware-accelerated ray tracing for Minecraft
  */
 public class RTXRenderer {
     
+    /**
+     * Where finished frames are presented and what size the output targets follow
+     */
+    public interface OutputTarget {
+        int getFramebufferId();
+        int getWidth();
+        int getHeight();
+    }
+    
+    // Minecraft's main framebuffer, sized like the window's real framebuffer rather than its viewport
+    private static final OutputTarget MINECRAFT_FRAMEBUFFER = new OutputTarget() {
+        @Override
+        public int getFramebufferId() {
+            return MinecraftClient.getInstance().getFramebuffer().fbo;
+        }
+        
+        @Override
+        public int getWidth() {
+            return MinecraftClient.getInstance().getWindow().getFramebufferWidth();
+        }
+        
+        @Override
+        public int getHeight() {
+            return MinecraftClient.getInstance().getWindow().getFramebufferHeight();
+        }
+    };
+    
     private static RTXRenderer instance;
     
+    private final GLBackend gl = GLBackend.get();
     private final RTXConfig config;
+    private final Path cacheDirectory;
+    private final OutputTarget outputTarget;
     private final RTXShaderManager shaderManager;
     private final RayTracingPipeline rayTracingPipeline;
     private final PostProcessingPipeline postProcessingPipeline;
     private final SceneManager sceneManager;
     private final RTXCapabilities capabilities;
+    private final TexturePool texturePool;
+    private final GPUMemoryTracker memoryTracker;
+    private final AsyncReadback asyncReadback;
+    private final GPUProfiler gpuProfiler;
+    private final FrameStats frameStats;
+    private final AllocationMonitor allocationMonitor;
+    private final AutoTuner autoTuner;
+    private final WorkgroupTuner workgroupTuner;
     
     private RTXFrameBuffer primaryFrameBuffer;
     private RTXFrameBuffer temporalFrameBuffer;
+    private RTXFrameBuffer outputFrameBuffer;
     private boolean initialized = false;
     private boolean rtxSupported = false;
     
+    // Set once a frame made it through every pass, only then is there anything to present
+    private boolean frameReady = false;
+    
+    // Resize requests are coalesced and applied once at the next frame boundary
+    private boolean resizePending = false;
+    
+    // A G-buffer layout switch waits for the shaders that write the new formats
+    private GBufferLayout frameBufferLayout = GBufferLayout.STANDARD;
+    private boolean layoutChangePending = false;
+    
+    // Budget checks query the driver, so they run every few frames
+    private static final int MEMORY_CHECK_INTERVAL = 60;
+    private static final int MIN_AVAILABLE_VIDEO_MEMORY_MB = 256;
+    private static final int MIN_DEGRADED_RENDER_SCALE = 50;
+    private static final int DEGRADE_STEP = 10;
+    
+    // A step back up has to fit under this share of the budget, so it doesn't bounce straight back down
+    private static final float RESTORE_BUDGET_FRACTION = 0.9f;
+    
+    // Render scale forced by VRAM pressure, runtime only so the user's saved setting is never touched; 0 = none
+    private int degradedRenderScale = 0;
+    
     // Performance tracking
     private long lastFrameTime = 0;
-    private float averageFrameTime = 16.67f; // ~60 FPS default
     private int frameCount = 0;
     
-    public RTXRenderer() {
+    public RTXRenderer(RTXConfig config) {
+        this(config, FabricLoader.getInstance().getGameDir().resolve("cache").resolve(RTXMod.MOD_ID), MINECRAFT_FRAMEBUFFER);
+    }
+    
+    public RTXRenderer(RTXConfig config, Path cacheDirectory, OutputTarget outputTarget) {
         instance = this;
-        this.config = new RTXConfig();
+        this.config = config;
+        this.cacheDirectory = cacheDirectory;
+        this.outputTarget = outputTarget;
         this.capabilities = new RTXCapabilities();
+        this.memoryTracker = new GPUMemoryTracker();
+        this.texturePool = new TexturePool(memoryTracker);
+        this.asyncReadback = new AsyncReadback(memoryTracker);
+        this.gpuProfiler = new GPUProfiler();
+        this.frameStats = new FrameStats();
+        this.allocationMonitor = new AllocationMonitor();
         this.shaderManager = new RTXShaderManager();
         this.sceneManager = new SceneManager();
+        this.autoTuner = new AutoTuner(config, capabilities);
+        this.workgroupTuner = new WorkgroupTuner(shaderManager, capabilities, cacheDirectory);
         
         // Initialize pipelines
-        this.rayTracingPipeline = new RayTracingPipeline(shaderManager, sceneManager);
-        this.postProcessingPipeline = new PostProcessingPipeline(shaderManager);
+        this.rayTracingPipeline = new RayTracingPipeline(shaderManager, sceneManager, config, gpuProfiler);
+        this.postProcessingPipeline = new PostProcessingPipeline(shaderManager, config, texturePool, memoryTracker, gpuProfiler);
+        
+        config.addListener(this::onConfigChanged);
         
         RTXMod.LOGGER.info("RTX Renderer created");
     }
@@ -75,13 +165,28 @@ public class RTXRenderer {
                 RTXMod.LOGGER.info("Hardware ray tracing supported! Enabling RTX features");
             }
             
-            // Initialize shader manager
+            // Initialize shader manager, compiled as the variant matching the current config
+            applyShaderDefines();
+            if (config.isShaderCacheEnabled()) {
+                shaderManager.setBinaryCache(new ShaderBinaryCache(cacheDirectory.resolve("shaders"),
+                    capabilities.getDriverSignature(), RTXMod.getVersion()));
+            }
+            workgroupTuner.applyStoredSizes();
+            if (!config.getShaderSourceDirectory().isEmpty()) {
+                shaderManager.watchSourceDirectory(Path.of(config.getShaderSourceDirectory()));
+            }
             shaderManager.initialize();
+            if (!shaderManager.isInitialized()) {
+                // Running on placeholder shaders would look like a working renderer, stay disabled instead
+                throw new IllegalStateException("Shader manager failed to initialize, RTX rendering is disabled");
+            }
             
             // Initialize frame buffers
-            createFrameBuffers();
+            frameBufferLayout = config.isCompactGBufferEnabled() ? GBufferLayout.COMPACT : GBufferLayout.STANDARD;
+            updateFrameBuffers();
             
             // Initialize pipelines
+            gpuProfiler.initialize();
             rayTracingPipeline.initialize();
             postProcessingPipeline.initialize();
             
@@ -90,44 +195,102 @@ public class RTXRenderer {
             
             initialized = true;
             RTXMod.LOGGER.info("RTX Renderer initialization complete!");
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to initialize RTX Renderer: ", e);
             initialized = false;
         }
     }
     
-    public void render(Matrix4f viewMatrix, Matrix4f projectionMatrix, float tickDelta) {
+    public void render(Matrix4fc viewMatrix, Matrix4fc projectionMatrix, float tickDelta) {
+        frameReady = false;
         if (!initialized || !config.isRayTracingEnabled()) {
             return;
         }
         
+        // Shaders build in the background, vanilla rendering continues until the first set is ready
+        shaderManager.update();
+        if (!shaderManager.isReady()) {
+            return;
+        }
+        
         long frameStart = System.nanoTime();
+        allocationMonitor.beginFrame();
+        
+        // Vanilla rendering ran since our last frame, nothing cached from then can be trusted
+        GLStateCache.beginFrame();
+        gpuProfiler.beginFrame();
         
         try {
+            // First frame with real shaders on a new driver, find out what the GPU can hold
+            // Local sizes go first, presets should be measured with the kernels as they will run
+            if (config.isAutoTuneEnabled() && !workgroupTuner.isRunning() && !autoTuner.isRunning()) {
+                if (workgroupTuner.isNeeded()) {
+                    workgroupTuner.start();
+                } else if (autoTuner.isNeeded()) {
+                    autoTuner.start();
+                }
+            }
+            
+            // Apply any resize requested since the last frame
+            gpuProfiler.begin(RenderPhase.RESIZE);
+            if (layoutChangePending && !shaderManager.isBuildInProgress()) {
+                layoutChangePending = false;
+                frameBufferLayout = config.isCompactGBufferEnabled() ? GBufferLayout.COMPACT : GBufferLayout.STANDARD;
+                resizePending = true;
+            }
+            // Frames that resize, build or tune allocate by design, the allocation check skips them
+            boolean settling = resizePending || shaderManager.isBuildInProgress()
+                || autoTuner.isRunning() || workgroupTuner.isRunning();
+            applyPendingResize();
+            gpuProfiler.end(RenderPhase.RESIZE);
+            
+            // Frames where a preset's variants or targets are still pending don't count
+            autoTuner.beginFrame(shaderManager.isBuildInProgress() || layoutChangePending);
+            workgroupTuner.beginFrame(shaderManager.isBuildInProgress());
+            
             // Update scene data
-            sceneManager.update(tickDelta);
+            gpuProfiler.begin(RenderPhase.SCENE_UPDATE);
+            sceneManager.update(tickDelta, gpuProfiler.getFrameIndex());
+            gpuProfiler.end(RenderPhase.SCENE_UPDATE);
             
             // Primary ray tracing pass
             renderRayTracedFrame(viewMatrix, projectionMatrix, tickDelta);
             
             // Post-processing pipeline
-            postProcessingPipeline.process(primaryFrameBuffer, temporalFrameBuffer, tickDelta);
+            postProcessingPipeline.process(primaryFrameBuffer, temporalFrameBuffer, outputFrameBuffer,
+                rayTracingPipeline.getJitter(), tickDelta);
+            frameReady = true;
+            autoTuner.endFrame();
+            workgroupTuner.endFrame();
+            
+            // Passes leave their program bound, hand vanilla a clean slate
+            gpuProfiler.endFrame();
+            GLStateCache.endFrame();
+            
+            // Hand finished captures to their consumers without waiting on the GPU
+            asyncReadback.update();
+            
+            // Free pooled textures nobody has reacquired for a while
+            texturePool.endFrame();
+            
+            // Scale back before the driver starts paging
+            enforceMemoryBudget();
             
             // Update performance metrics
             updatePerformanceMetrics(frameStart);
-            
+            allocationMonitor.endFrame(settling);
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Error during RTX rendering: ", e);
+            gpuProfiler.endFrame();
+            GLStateCache.endFrame();
         }
     }
     
-    private void renderRayTracedFrame(Matrix4f viewMatrix, Matrix4f projectionMatrix, float tickDelta) {
-        // Bind primary frame buffer
-        primaryFrameBuffer.bind();
-        
-        // Clear buffers
-        GL46.glClear(GL46.GL_COLOR_BUFFER_BIT | GL46.GL_DEPTH_BUFFER_BIT);
+    private void renderRayTracedFrame(Matrix4fc viewMatrix, Matrix4fc projectionMatrix, float tickDelta) {
+        // Bind and clear the primary frame buffer
+        primaryFrameBuffer.clear();
         
         // Set up ray tracing pipeline
         rayTracingPipeline.render(viewMatrix, projectionMatrix, primaryFrameBuffer, tickDelta);
@@ -136,53 +299,190 @@ public class RTXRenderer {
         primaryFrameBuffer.unbind();
     }
     
-    private void createFrameBuffers() {
-        MinecraftClient client = MinecraftClient.getInstance();
-        int width = client.getWindow().getFramebufferWidth();
-        int height = client.getWindow().getFramebufferHeight();
+    private void applyShaderDefines() {
+        // Compile-time constants let the compiler unroll bounce loops and strip disabled effects
+        shaderManager.setDefine("RTX_MAX_BOUNCES", Integer.toString(config.getMaxRayBounces()));
+        shaderManager.setDefine("RTX_SAMPLES_PER_PIXEL", Integer.toString(config.getSamplesPerPixel()));
+        shaderManager.setDefine("RTX_REFLECTION_QUALITY", Integer.toString(config.reflectionQuality));
+        shaderManager.setDefine("RTX_ENABLE_GI", config.enableGlobalIllumination);
+        shaderManager.setDefine("RTX_ENABLE_REFLECTIONS", config.enableReflections);
+        shaderManager.setDefine("RTX_ENABLE_AO", config.enableAmbientOcclusion);
+        shaderManager.setDefine("RTX_ENABLE_SHADOWS", config.enableRayTracedShadows);
+        shaderManager.setDefine(GBufferLayout.COMPACT_DEFINE, config.isCompactGBufferEnabled());
+        
+        // Kernels with faster paths for these compile them where the hardware has the feature
+        shaderManager.setDefine("RTX_HAS_SUBGROUP_ARITHMETIC", capabilities.supportsSubgroupArithmetic());
+        shaderManager.setDefine("RTX_HAS_SUBGROUP_BALLOT", capabilities.supportsSubgroupBallot());
+        shaderManager.setDefine("RTX_HAS_SUBGROUP_SHUFFLE", capabilities.supportsSubgroupShuffle());
+        shaderManager.setDefine("RTX_HAS_SUBGROUP_PARTITIONED", capabilities.supportsSubgroupPartitioned());
+        shaderManager.setDefine("RTX_HAS_INT64", capabilities.supportsInt64());
+        shaderManager.setDefine("RTX_HAS_FLOAT16", capabilities.supportsHalfFloat());
+        shaderManager.setDefine("RTX_HAS_BINDLESS_TEXTURE", capabilities.supportsBindlessTextures());
+    }
+    
+    // Call after changing any setting baked into shader defines
+    public void onShaderSettingsChanged() {
+        if (!initialized) return;
+        
+        applyShaderDefines();
+        shaderManager.rebuildVariants();
+    }
+    
+    // Settings only invalidate what they feed into, everything else keeps its state
+    private void onConfigChanged(RTXConfig.Setting setting) {
+        if (!initialized) return;
+        
+        switch (setting.getImpact()) {
+            case SHADER_VARIANTS -> onShaderSettingsChanged();
+            // Only the traced-resolution history changes meaning, upscaler history and exposure stay valid
+            case TEMPORAL_HISTORY -> postProcessingPipeline.onRenderResolutionChanged();
+            case FRAME_BUFFERS -> resizePending = true;
+            case GBUFFER_LAYOUT -> {
+                onShaderSettingsChanged();
+                layoutChangePending = true;
+            }
+            default -> {
+            }
+        }
+    }
+    
+    private void updateFrameBuffers() {
+        int width = outputTarget.getWidth();
+        int height = outputTarget.getHeight();
         
         // Apply render scale
-        int scaledWidth = (int)(width * (config.renderScale / 100.0f));
-        int scaledHeight = (int)(height * (config.renderScale / 100.0f));
+        int renderScale = getEffectiveRenderScale();
+        int scaledWidth = Math.max(1, (int)(width * (renderScale / 100.0f)));
+        int scaledHeight = Math.max(1, (int)(height * (renderScale / 100.0f)));
+        
+        // Traced targets follow the render scale, the upscaler output only the window
+        boolean renderTargetsChanged = primaryFrameBuffer == null
+            || primaryFrameBuffer.getWidth() != scaledWidth || primaryFrameBuffer.getHeight() != scaledHeight
+            || primaryFrameBuffer.getLayout() != frameBufferLayout;
+        boolean upsampling = config.isTemporalUpsamplingEnabled();
+        boolean outputChanged = upsampling != (outputFrameBuffer != null)
+            || outputFrameBuffer != null && (outputFrameBuffer.getWidth() != width || outputFrameBuffer.getHeight() != height
+                || outputFrameBuffer.getLayout() != frameBufferLayout);
+        if (!renderTargetsChanged && !outputChanged) {
+            return;
+        }
+        
+        // Attachments go back to the pool, so switching back and forth reuses them
+        if (renderTargetsChanged) {
+            if (primaryFrameBuffer != null) {
+                primaryFrameBuffer.delete();
+            }
+            if (temporalFrameBuffer != null) {
+                temporalFrameBuffer.delete();
+            }
+            primaryFrameBuffer = new RTXFrameBuffer(scaledWidth, scaledHeight, true, texturePool, frameBufferLayout);
+            temporalFrameBuffer = new RTXFrameBuffer(scaledWidth, scaledHeight, true, texturePool, frameBufferLayout);
+            postProcessingPipeline.onRenderResolutionChanged();
+        }
         
-        primaryFrameBuffer = new RTXFrameBuffer(scaledWidth, scaledHeight, true);
-        temporalFrameBuffer = new RTXFrameBuffer(scaledWidth, scaledHeight, true);
+        // The upscaler resolves the scaled frames into a native resolution output
+        if (outputChanged) {
+            if (outputFrameBuffer != null) {
+                outputFrameBuffer.delete();
+                outputFrameBuffer = null;
+            }
+            if (upsampling) {
+                outputFrameBuffer = new RTXFrameBuffer(width, height, true, texturePool, frameBufferLayout);
+            }
+            postProcessingPipeline.onOutputResolutionChanged();
+        }
         
-        RTXMod.LOGGER.info("Created RTX frame buffers: {}x{} (scale: {}%)", 
-            scaledWidth, scaledHeight, config.renderScale);
+        rayTracingPipeline.onResize(width, height);
+        
+        RTXMod.LOGGER.info("Updated RTX frame buffers: {}x{} (scale: {}%, output: {})",
+            scaledWidth, scaledHeight, renderScale, upsampling ? width + "x" + height : "none");
     }
     
     public void onWindowResize(int width, int height) {
         if (!initialized) return;
         
-        // Recreate frame buffers with new dimensions
-        if (primaryFrameBuffer != null) {
-            primaryFrameBuffer.delete();
+        // RenderSystem.viewport fires many times per frame, so only remember that something changed
+        resizePending = true;
+    }
+    
+    private void applyPendingResize() {
+        if (!resizePending) return;
+        resizePending = false;
+        
+        updateFrameBuffers();
+    }
+    
+    private void enforceMemoryBudget() {
+        if (frameCount % MEMORY_CHECK_INTERVAL != 0) return;
+        
+        long budgetMB = config.getVramBudgetMB() > 0
+            ? config.getVramBudgetMB()
+            : capabilities.getDedicatedVideoMemoryMB() / 2;
+        long usedMB = GPUMemoryTracker.toMegabytes(memoryTracker.getTotalBytes());
+        int availableMB = capabilities.getAvailableVideoMemoryMB();
+        
+        // Free memory is device-wide, other applications drain it too; idle pool textures are all we give back for that
+        if (availableMB >= 0 && availableMB < MIN_AVAILABLE_VIDEO_MEMORY_MB) {
+            texturePool.trimIdle();
+            usedMB = GPUMemoryTracker.toMegabytes(memoryTracker.getTotalBytes());
         }
-        if (temporalFrameBuffer != null) {
-            temporalFrameBuffer.delete();
+        if (budgetMB <= 0) return;
+        
+        if (usedMB <= budgetMB) {
+            if (degradedRenderScale > 0) {
+                restoreRenderScale(usedMB, budgetMB);
+            }
+            return;
         }
         
-        createFrameBuffers();
+        // Idle pooled textures are the cheapest memory to give back
+        texturePool.trimIdle();
+        usedMB = GPUMemoryTracker.toMegabytes(memoryTracker.getTotalBytes());
+        if (usedMB <= budgetMB) {
+            RTXMod.LOGGER.info("Trimmed texture pool to stay within the {} MB VRAM budget", budgetMB);
+            return;
+        }
         
-        // Notify pipelines of resize
-        rayTracingPipeline.onResize(width, height);
-        postProcessingPipeline.onResize(width, height);
+        // Fewer traced pixels shrink every render resolution target
+        int scale = getEffectiveRenderScale();
+        if (scale > MIN_DEGRADED_RENDER_SCALE) {
+            degradedRenderScale = Math.max(MIN_DEGRADED_RENDER_SCALE, scale - DEGRADE_STEP);
+            resizePending = true;
+            RTXMod.LOGGER.warn("VRAM over budget ({} MB used, budget {} MB), render scale lowered to {}% until usage drops",
+                usedMB, budgetMB, degradedRenderScale);
+        } else {
+            RTXMod.LOGGER.warn("VRAM over budget ({} MB used, budget {} MB), no further degradation possible", usedMB, budgetMB);
+            memoryTracker.logUsage();
+        }
+    }
+    
+    // One step back towards the user's scale, only if the larger targets are expected to fit
+    private void restoreRenderScale(long usedMB, long budgetMB) {
+        int scale = getEffectiveRenderScale();
+        int nextScale = Math.min(config.getRenderScale(), scale + DEGRADE_STEP);
+        
+        // Traced targets grow with the pixel count, estimate the step before taking it
+        float growth = (float) (nextScale * nextScale) / (scale * scale);
+        if (usedMB * growth > budgetMB * RESTORE_BUDGET_FRACTION) return;
+        
+        degradedRenderScale = nextScale < config.getRenderScale() ? nextScale : 0;
+        resizePending = true;
+        RTXMod.LOGGER.info("VRAM usage back under budget ({} MB used, budget {} MB), render scale raised to {}%",
+            usedMB, budgetMB, nextScale);
+    }
+    
+    // Scale the traced targets are sized for, the user's setting unless VRAM pressure lowered it
+    public int getEffectiveRenderScale() {
+        int scale = config.getRenderScale();
+        return degradedRenderScale > 0 ? Math.min(scale, degradedRenderScale) : scale;
     }
     
     private void updatePerformanceMetrics(long frameStart) {
         frameCount++;
         lastFrameTime = System.nanoTime() - frameStart;
         
-        // Update rolling average
-        float frameTimeMs = lastFrameTime / 1_000_000.0f;
-        averageFrameTime = (averageFrameTime * 0.9f) + (frameTimeMs * 0.1f);
-        
-        // Log performance every 60 frames
-        if (frameCount % 60 == 0) {
-            float fps = 1000.0f / averageFrameTime;
-            RTXMod.LOGGER.debug("RTX Performance: {:.1f} FPS ({:.2f}ms)", fps, averageFrameTime);
-        }
+        // Percentiles and stutter attribution, logged every few seconds at debug level
+        frameStats.recordFrame(lastFrameTime / 1_000_000.0f, gpuProfiler, sceneManager.getFrameUploadBytes());
     }
     
     public void cleanup() {
@@ -191,6 +491,10 @@ public class RTXRenderer {
         RTXMod.LOGGER.info("Cleaning up RTX Renderer...");
         
         try {
+            // An unfinished tuning run restarts on the next launch
+            autoTuner.stop();
+            workgroupTuner.stop();
+            
             // Cleanup pipelines
             if (rayTracingPipeline != null) {
                 rayTracingPipeline.cleanup();
@@ -202,11 +506,22 @@ public class RTXRenderer {
             // Cleanup frame buffers
             if (primaryFrameBuffer != null) {
                 primaryFrameBuffer.delete();
+                primaryFrameBuffer = null;
             }
             if (temporalFrameBuffer != null) {
                 temporalFrameBuffer.delete();
+                temporalFrameBuffer = null;
+            }
+            if (outputFrameBuffer != null) {
+                outputFrameBuffer.delete();
+                outputFrameBuffer = null;
             }
             
+            asyncReadback.cleanup();
+            gpuProfiler.cleanup();
+            texturePool.cleanup();
+            memoryTracker.logUsage();
+            
             // Cleanup managers
             if (sceneManager != null) {
                 sceneManager.cleanup();
@@ -217,7 +532,7 @@ public class RTXRenderer {
             
             initialized = false;
             RTXMod.LOGGER.info("RTX Renderer cleanup complete");
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Error during RTX cleanup: ", e);
         }
@@ -229,19 +544,53 @@ public class RTXRenderer {
     public RTXConfig getConfig() { return config; }
     public RTXShaderManager getShaderManager() { return shaderManager; }
     public SceneManager getSceneManager() { return sceneManager; }
-    public float getAverageFrameTime() { return averageFrameTime; }
     public RTXCapabilities getCapabilities() { return capabilities; }
+    public GPUMemoryTracker getMemoryTracker() { return memoryTracker; }
+    public AsyncReadback getAsyncReadback() { return asyncReadback; }
+    public GPUProfiler getGpuProfiler() { return gpuProfiler; }
+    public FrameStats getFrameStats() { return frameStats; }
+    public AutoTuner getAutoTuner() { return autoTuner; }
+    public WorkgroupTuner getWorkgroupTuner() { return workgroupTuner; }
+    
+    // Final image of the frame: the upscaled output when temporal upsampling is active
+    public RTXFrameBuffer getFinalFrameBuffer() {
+        return outputFrameBuffer != null ? outputFrameBuffer : primaryFrameBuffer;
+    }
+    
+    /**
+     * Copies this frame's final image over the output target, call once the world has been drawn
+     */
+    public void present() {
+        if (!frameReady) return;
+        frameReady = false;
+        
+        RTXFrameBuffer finalBuffer = getFinalFrameBuffer();
+        if (finalBuffer == null || !finalBuffer.isInitialized()) return;
+        
+        // Without upsampling the scaled frame is stretched to the window here
+        gl.blitNamedFramebuffer(finalBuffer.getFramebufferId(), outputTarget.getFramebufferId(),
+            0, 0, finalBuffer.getWidth(), finalBuffer.getHeight(),
+            0, 0, outputTarget.getWidth(), outputTarget.getHeight(),
+            GL46.GL_COLOR_BUFFER_BIT, GL46.GL_LINEAR);
+    }
     
     // Debug information
     public String getDebugInfo() {
         if (!initialized) return "RTX Renderer: Not initialized";
         
-        float fps = 1000.0f / averageFrameTime;
-        return String.format("RTX Renderer: %.1f FPS | RTX: %s | Samples: %d | Bounces: %d",
-            fps,
+        return String.format("RTX Renderer: CPU %.2f ms (p99 %.2f) | GPU: %.2f ms (p99 %.2f, %s) | RTX: %s | Samples: %d | Bounces: %d | VRAM: %d MB (peak %d MB) | GL binds: %d (%d skipped)",
+            frameStats.getCpuMedianMs(),
+            frameStats.getCpuP99Ms(),
+            frameStats.getGpuMedianMs(),
+            frameStats.getGpuP99Ms(),
+            gpuProfiler.getSummary(),
             rtxSupported ? "HW" : "SW",
             config.getSamplesPerPixel(),
-            config.getMaxRayBounces()
+            config.getMaxRayBounces(),
+            GPUMemoryTracker.toMegabytes(memoryTracker.getTotalBytes()),
+            GPUMemoryTracker.toMegabytes(memoryTracker.getPeakBytes()),
+            GLStateCache.getIssuedCalls(),
+            GLStateCache.getSkippedCalls()
         );
     }
 }
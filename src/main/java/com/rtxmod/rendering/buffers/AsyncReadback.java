@@ -0,0 +1,236 @@
+package com.rtxmod.rendering.buffers;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.util.GLBackend;
+import org.lwjgl.opengl.GL46;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking texture readback through a ring of pixel buffer objects
+ * Copies are queued on the GPU and handed to the caller a few frames later, once their fence has signalled
+ */
+public class AsyncReadback {
+    
+    // Mapping earlier than this almost always finds the copy still in flight
+    private static final int READBACK_LATENCY_FRAMES = 2;
+    private static final int DEFAULT_RING_SIZE = 3;
+    
+    @FunctionalInterface
+    public interface ReadbackHandler {
+        // data is mapped GPU memory, only valid until this call returns
+        void onReadback(ByteBuffer data, int width, int height);
+    }
+    
+    private static final class Slot {
+        int bufferId = 0;
+        long capacity = 0;
+        long fence = 0;
+        long size = 0;
+        int width;
+        int height;
+        int issuedFrame;
+        ReadbackHandler handler;
+        
+        boolean isPending() {
+            return fence != 0;
+        }
+    }
+    
+    private final GLBackend gl = GLBackend.get();
+    private final GPUMemoryTracker memoryTracker;
+    private final Slot[] slots;
+    
+    private int frameIndex = 0;
+    private int completedCount = 0;
+    private int droppedCount = 0;
+    
+    public AsyncReadback(GPUMemoryTracker memoryTracker) {
+        this(memoryTracker, DEFAULT_RING_SIZE);
+    }
+    
+    public AsyncReadback(GPUMemoryTracker memoryTracker, int ringSize) {
+        this.memoryTracker = memoryTracker;
+        this.slots = new Slot[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Slot();
+        }
+    }
+    
+    /**
+     * Queues a copy of one frame buffer attachment in its native format
+     * Returns false if every slot is still in flight, the request is dropped rather than stalling
+     */
+    public boolean requestAttachment(RTXFrameBuffer frameBuffer, int attachment, ReadbackHandler handler) {
+        GBufferLayout layout = frameBuffer.getLayout();
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+        
+        switch (attachment) {
+            case RTXFrameBuffer.COLOR_ATTACHMENT:
+                return frameBuffer.isUseHDR()
+                    ? request(frameBuffer.getColorTextureId(), width, height, GL46.GL_RGBA, GL46.GL_HALF_FLOAT, 8, handler)
+                    : request(frameBuffer.getColorTextureId(), width, height, GL46.GL_RGBA, GL46.GL_UNSIGNED_BYTE, 4, handler);
+            case RTXFrameBuffer.NORMAL_ATTACHMENT:
+                return layout.isCompact()
+                    ? request(frameBuffer.getNormalTextureId(), width, height, GL46.GL_RG, GL46.GL_SHORT, 4, handler)
+                    : request(frameBuffer.getNormalTextureId(), width, height, GL46.GL_RGBA, GL46.GL_HALF_FLOAT, 8, handler);
+            case RTXFrameBuffer.MATERIAL_ATTACHMENT:
+                return layout.isCompact()
+                    ? request(frameBuffer.getMaterialTextureId(), width, height, GL46.GL_RED_INTEGER, GL46.GL_UNSIGNED_INT, 4, handler)
+                    : request(frameBuffer.getMaterialTextureId(), width, height, GL46.GL_RGBA, GL46.GL_UNSIGNED_BYTE, 4, handler);
+            case RTXFrameBuffer.MOTION_VECTOR_ATTACHMENT:
+                return request(frameBuffer.getMotionVectorTextureId(), width, height, GL46.GL_RG, GL46.GL_HALF_FLOAT, 4, handler);
+            case RTXFrameBuffer.DEPTH_ATTACHMENT:
+                return request(frameBuffer.getDepthTextureId(), width, height, GL46.GL_DEPTH_COMPONENT, GL46.GL_FLOAT, 4, handler);
+            default:
+                RTXMod.LOGGER.warn("Unknown frame buffer attachment {} requested for readback", attachment);
+                return false;
+        }
+    }
+    
+    /**
+     * Queues a copy of mip level 0 of a texture, converted by the driver to format/type
+     */
+    public boolean request(int textureId, int width, int height, int format, int type, int bytesPerPixel,
+                           ReadbackHandler handler) {
+        Slot slot = findFreeSlot();
+        if (slot == null) {
+            droppedCount++;
+            return false;
+        }
+        
+        long size = (long) width * height * bytesPerPixel;
+        ensureCapacity(slot, size);
+        
+        // Image writes from compute passes must land before the copy reads the texture
+        gl.memoryBarrier(GL46.GL_PIXEL_BUFFER_BARRIER_BIT | GL46.GL_TEXTURE_UPDATE_BARRIER_BIT);
+        
+        gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, slot.bufferId);
+        gl.getTextureImage(textureId, 0, format, type, (int) size, 0L);
+        gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, 0);
+        
+        slot.fence = gl.fenceSync(GL46.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        slot.size = size;
+        slot.width = width;
+        slot.height = height;
+        slot.issuedFrame = frameIndex;
+        slot.handler = handler;
+        return true;
+    }
+    
+    /**
+     * Delivers every readback whose copy has finished, call once per frame
+     */
+    public void update() {
+        frameIndex++;
+        
+        for (Slot slot : slots) {
+            if (!slot.isPending() || frameIndex - slot.issuedFrame < READBACK_LATENCY_FRAMES) {
+                continue;
+            }
+            
+            // Zero timeout: only asks whether the copy is done, never waits for it
+            int status = gl.clientWaitSync(slot.fence, 0, 0L);
+            if (status == GL46.GL_TIMEOUT_EXPIRED) {
+                continue;
+            }
+            
+            gl.deleteSync(slot.fence);
+            slot.fence = 0;
+            
+            if (status == GL46.GL_WAIT_FAILED) {
+                RTXMod.LOGGER.warn("Readback fence wait failed, dropping readback");
+                slot.handler = null;
+                droppedCount++;
+                continue;
+            }
+            
+            deliver(slot);
+        }
+    }
+    
+    private void deliver(Slot slot) {
+        ReadbackHandler handler = slot.handler;
+        slot.handler = null;
+        
+        gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, slot.bufferId);
+        ByteBuffer data = gl.mapBufferRange(GL46.GL_PIXEL_PACK_BUFFER, 0, slot.size, GL46.GL_MAP_READ_BIT);
+        
+        try {
+            if (data != null) {
+                handler.onReadback(data, slot.width, slot.height);
+                completedCount++;
+            } else {
+                RTXMod.LOGGER.warn("Failed to map readback buffer");
+                droppedCount++;
+            }
+        } catch (Exception e) {
+            RTXMod.LOGGER.error("Readback handler failed: ", e);
+        } finally {
+            if (data != null) {
+                gl.unmapBuffer(GL46.GL_PIXEL_PACK_BUFFER);
+            }
+            gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, 0);
+        }
+    }
+    
+    private Slot findFreeSlot() {
+        for (Slot slot : slots) {
+            if (!slot.isPending()) {
+                return slot;
+            }
+        }
+        return null;
+    }
+    
+    private void ensureCapacity(Slot slot, long size) {
+        if (slot.bufferId != 0 && slot.capacity >= size) {
+            return;
+        }
+        
+        if (slot.bufferId == 0) {
+            slot.bufferId = gl.genBuffers();
+        }
+        
+        // Stream-read storage sits in host-visible memory on most drivers
+        gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, slot.bufferId);
+        gl.bufferData(GL46.GL_PIXEL_PACK_BUFFER, size, GL46.GL_STREAM_READ);
+        gl.bindBuffer(GL46.GL_PIXEL_PACK_BUFFER, 0);
+        
+        slot.capacity = size;
+        memoryTracker.trackBuffer("AsyncReadback", slot.bufferId, size);
+    }
+    
+    public void cleanup() {
+        for (Slot slot : slots) {
+            if (slot.fence != 0) {
+                gl.deleteSync(slot.fence);
+                slot.fence = 0;
+            }
+            if (slot.bufferId != 0) {
+                gl.deleteBuffers(slot.bufferId);
+                memoryTracker.untrack(GPUMemoryTracker.ResourceType.BUFFER, slot.bufferId);
+                slot.bufferId = 0;
+                slot.capacity = 0;
+            }
+            slot.handler = null;
+        }
+        
+        RTXMod.LOGGER.debug("Async readback released ({} completed, {} dropped)", completedCount, droppedCount);
+    }
+    
+    // Statistics
+    public int getCompletedCount() { return completedCount; }
+    public int getDroppedCount() { return droppedCount; }
+    
+    public int getPendingCount() {
+        int count = 0;
+        for (Slot slot : slots) {
+            if (slot.isPending()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+package com.rtxmod.rendering.buffers;
+
+import org.lwjgl.opengl.GL46;
+
+/**
+ * Texture formats used for the G-buffer attachments of an RTXFrameBuffer
+ * Shaders read and write them through the helpers in lib/packing.glsl
+ */
+public enum GBufferLayout {
+    
+    // Half float normals, RGBA8 material. RGBA rather than RGB16F so normals can be bound as an image
+    STANDARD(GL46.GL_RGBA16F, GL46.GL_RGBA8, GL46.GL_LINEAR),
+    
+    // Octahedral RG16_SNORM normals, material packed into one 32-bit word
+    COMPACT(GL46.GL_RG16_SNORM, GL46.GL_R32UI, GL46.GL_NEAREST);
+    
+    // Shader define selecting the matching pack/unpack helpers
+    public static final String COMPACT_DEFINE = "RTX_GBUFFER_COMPACT";
+    
+    // Motion vectors keep half floats for sub-pixel reprojection, depth stays 32-bit for the depth test
+    public static final int MOTION_VECTOR_FORMAT = GL46.GL_RG16F;
+    public static final int DEPTH_FORMAT = GL46.GL_DEPTH_COMPONENT32F;
+    
+    private final int normalFormat;
+    private final int materialFormat;
+    private final int materialFilter;
+    
+    GBufferLayout(int normalFormat, int materialFormat, int materialFilter) {
+        this.normalFormat = normalFormat;
+        this.materialFormat = materialFormat;
+        this.materialFilter = materialFilter;
+    }
+    
+    public int getNormalFormat() {
+        return normalFormat;
+    }
+    
+    public int getMaterialFormat() {
+        return materialFormat;
+    }
+    
+    // Integer textures are incomplete with linear filtering
+    public int getMaterialFilter() {
+        return materialFilter;
+    }
+    
+    public boolean isCompact() {
+        return this == COMPACT;
+    }
+}
@@ -0,0 +1,139 @@
+package com.rtxmod.rendering.buffers;
+
+import com.rtxmod.RTXMod;
+import org.lwjgl.opengl.GL46;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accounts for every texture and buffer the mod allocates, grouped by owner
+ * Sizes are computed from format and dimensions, so they are estimates of what the driver actually reserves
+ */
+public class GPUMemoryTracker {
+    
+    public enum ResourceType {
+        TEXTURE,
+        BUFFER
+    }
+    
+    private static final class Allocation {
+        final ResourceType type;
+        final long bytes;
+        String owner;
+        
+        Allocation(ResourceType type, long bytes, String owner) {
+            this.type = type;
+            this.bytes = bytes;
+            this.owner = owner;
+        }
+    }
+    
+    // Texture and buffer names live in separate GL namespaces, so the key includes the type
+    private final Map<Long, Allocation> allocations = new HashMap<>();
+    
+    private long totalBytes = 0;
+    private long peakBytes = 0;
+    
+    public void trackTexture(String owner, int textureId, int internalFormat, int width, int height) {
+        track(ResourceType.TEXTURE, textureId, (long) width * height * bytesPerPixel(internalFormat), owner);
+    }
+    
+    public void trackBuffer(String owner, int bufferId, long bytes) {
+        track(ResourceType.BUFFER, bufferId, bytes, owner);
+    }
+    
+    private void track(ResourceType type, int id, long bytes, String owner) {
+        if (id == 0) return;
+        
+        Allocation previous = allocations.put(key(type, id), new Allocation(type, bytes, owner));
+        if (previous != null) {
+            // Buffer storage was respecified, replace the old size
+            totalBytes -= previous.bytes;
+        }
+        
+        totalBytes += bytes;
+        peakBytes = Math.max(peakBytes, totalBytes);
+    }
+    
+    public void untrack(ResourceType type, int id) {
+        Allocation allocation = allocations.remove(key(type, id));
+        if (allocation != null) {
+            totalBytes -= allocation.bytes;
+        }
+    }
+    
+    // Pooled textures change hands without being reallocated
+    public void setOwner(ResourceType type, int id, String owner) {
+        Allocation allocation = allocations.get(key(type, id));
+        if (allocation != null) {
+            allocation.owner = owner;
+        }
+    }
+    
+    public Map<String, Long> getUsageByOwner() {
+        Map<String, Long> usage = new TreeMap<>();
+        for (Allocation allocation : allocations.values()) {
+            usage.merge(allocation.owner, allocation.bytes, Long::sum);
+        }
+        return usage;
+    }
+    
+    public void logUsage() {
+        RTXMod.LOGGER.info("GPU memory: {} MB in use, {} MB peak, {} allocations",
+            toMegabytes(totalBytes), toMegabytes(peakBytes), allocations.size());
+        for (Map.Entry<String, Long> entry : getUsageByOwner().entrySet()) {
+            RTXMod.LOGGER.info("  {}: {} MB", entry.getKey(), toMegabytes(entry.getValue()));
+        }
+    }
+    
+    public void resetPeak() {
+        peakBytes = totalBytes;
+    }
+    
+    private static long key(ResourceType type, int id) {
+        return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+    
+    public static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+    
+    public static int bytesPerPixel(int internalFormat) {
+        switch (internalFormat) {
+            case GL46.GL_R8:
+                return 1;
+            case GL46.GL_RG8:
+            case GL46.GL_R16F:
+                return 2;
+            case GL46.GL_RGBA8:
+            case GL46.GL_RG16F:
+            case GL46.GL_RG16_SNORM:
+            case GL46.GL_R32F:
+            case GL46.GL_R32UI:
+            case GL46.GL_R11F_G11F_B10F:
+            case GL46.GL_DEPTH_COMPONENT32F:
+            case GL46.GL_DEPTH24_STENCIL8:
+            // 24-bit depth is padded to 32 bits by every desktop driver
+            case GL46.GL_DEPTH_COMPONENT24:
+                return 4;
+            // RGB16F is padded to four channels as well
+            case GL46.GL_RGB16F:
+            case GL46.GL_RGBA16F:
+            case GL46.GL_RG32F:
+                return 8;
+            case GL46.GL_RGBA32F:
+                return 16;
+            default:
+                RTXMod.LOGGER.warn("Unknown texture format 0x{} in memory accounting, assuming 4 bytes per pixel",
+                    Integer.toHexString(internalFormat));
+                return 4;
+        }
+    }
+    
+    // Statistics
+    public long getTotalBytes() { return totalBytes; }
+    public long getPeakBytes() { return peakBytes; }
+    public int getAllocationCount() { return allocations.size(); }
+}
@@ -1,10 +1,11 @@
 package com.rtxmod.rendering.buffers;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.profiling.events.FrameBufferCreateEvent;
+import com.rtxmod.rendering.profiling.events.FrameBufferDeleteEvent;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.GLStateCache;
 import org.lwjgl.opengl.GL46;
-import org.lwjgl.system.MemoryStack;
-
-import java.nio.IntBuffer;
 
 /**
  * Advanced frame buffer for RTX rendering with multiple render targets
@@ -18,9 +19,16 @@ public class RTXFrameBuffer {
     public static final int MOTION_VECTOR_ATTACHMENT = 3;
     public static final int DEPTH_ATTACHMENT = 4;
     
+    private static final float[] CLEAR_COLOR = {0.0f, 0.0f, 0.0f, 0.0f};
+    private static final int[] CLEAR_MATERIAL = {0, 0, 0, 0};
+    private static final float[] CLEAR_DEPTH = {1.0f};
+    
+    private final GLBackend gl = GLBackend.get();
     private final int width;
     private final int height;
     private final boolean useHDR;
+    private final TexturePool texturePool;
+    private final GBufferLayout layout;
     
     private int framebufferId;
     private int colorTextureId;
@@ -33,18 +41,31 @@ public class RTXFrameBuffer {
     private boolean initialized = false;
     
     public RTXFrameBuffer(int width, int height, boolean useHDR) {
+        this(width, height, useHDR, null);
+    }
+    
+    public RTXFrameBuffer(int width, int height, boolean useHDR, TexturePool texturePool) {
+        this(width, height, useHDR, texturePool, GBufferLayout.STANDARD);
+    }
+    
+    public RTXFrameBuffer(int width, int height, boolean useHDR, TexturePool texturePool, GBufferLayout layout) {
         this.width = width;
         this.height = height;
         this.useHDR = useHDR;
+        this.texturePool = texturePool;
+        this.layout = layout;
         
         initialize();
     }
     
     private void initialize() {
+        FrameBufferCreateEvent event = new FrameBufferCreateEvent();
+        event.begin();
+        
         try {
             // Generate framebuffer
-            framebufferId = GL46.glGenFramebuffers();
-            GL46.glBindFramebuffer(GL46.GL_FRAMEBUFFER, framebufferId);
+            framebufferId = gl.genFramebuffers();
+            gl.bindFramebuffer(GL46.GL_FRAMEBUFFER, framebufferId);
             
             // Create color attachment (main render target)
             createColorAttachment();
@@ -65,147 +86,166 @@ public class RTXFrameBuffer {
             setDrawBuffers();
             
             // Check framebuffer completeness
-            int status = GL46.glCheckFramebufferStatus(GL46.GL_FRAMEBUFFER);
+            int status = gl.checkFramebufferStatus(GL46.GL_FRAMEBUFFER);
             if (status != GL46.GL_FRAMEBUFFER_COMPLETE) {
                 throw new RuntimeException("Framebuffer not complete: " + status);
             }
             
             // Unbind framebuffer
-            GL46.glBindFramebuffer(GL46.GL_FRAMEBUFFER, 0);
+            gl.bindFramebuffer(GL46.GL_FRAMEBUFFER, 0);
             
             initialized = true;
-            RTXMod.LOGGER.info("Created RTX framebuffer {}x{} (HDR: {})", width, height, useHDR);
-            
+            RTXMod.LOGGER.info("Created RTX framebuffer {}x{} (HDR: {}, G-buffer: {})", width, height, useHDR, layout);
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to create RTX framebuffer: ", e);
             cleanup();
         }
+        
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.hdr = useHDR;
+            event.layout = layout.name();
+            event.succeeded = initialized;
+            event.commit();
+        }
     }
     
     private void createColorAttachment() {
-        colorTextureId = GL46.glGenTextures();
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, colorTextureId);
-        
         // Use HDR format if enabled
-        int internalFormat = useHDR ? GL46.GL_RGBA16F : GL46.GL_RGBA8;
-        int format = GL46.GL_RGBA;
-        int type = useHDR ? GL46.GL_HALF_FLOAT : GL46.GL_UNSIGNED_BYTE;
+        int internalFormat = getColorFormat();
         
-        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, internalFormat, width, height, 0, format, type, 0);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        colorTextureId = allocateTexture(internalFormat);
+        gl.textureParameteri(colorTextureId, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(colorTextureId, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(colorTextureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(colorTextureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        GL46.glFramebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT0, GL46.GL_TEXTURE_2D, colorTextureId, 0);
+        gl.framebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT0, GL46.GL_TEXTURE_2D, colorTextureId, 0);
     }
     
     private void createNormalAttachment() {
-        normalTextureId = GL46.glGenTextures();
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, normalTextureId);
+        // Half float normals, or octahedral snorm in the compact layout
+        normalTextureId = allocateTexture(layout.getNormalFormat());
+        gl.textureParameteri(normalTextureId, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(normalTextureId, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(normalTextureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(normalTextureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        // Use high precision for normals
-        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, GL46.GL_RGB16F, width, height, 0, GL46.GL_RGB, GL46.GL_HALF_FLOAT, 0);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        // RG16_SNORM isn't required to be color-renderable, compact normals are only written as images
+        if (layout.isCompact()) return;
         
-        GL46.glFramebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT1, GL46.GL_TEXTURE_2D, normalTextureId, 0);
+        gl.framebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT1, GL46.GL_TEXTURE_2D, normalTextureId, 0);
     }
     
     private void createMaterialAttachment() {
-        materialTextureId = GL46.glGenTextures();
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, materialTextureId);
+        // Material properties (roughness, metallic, ao, emission), RGBA8 or one packed R32UI word
+        materialTextureId = allocateTexture(layout.getMaterialFormat());
+        gl.textureParameteri(materialTextureId, GL46.GL_TEXTURE_MIN_FILTER, layout.getMaterialFilter());
+        gl.textureParameteri(materialTextureId, GL46.GL_TEXTURE_MAG_FILTER, layout.getMaterialFilter());
+        gl.textureParameteri(materialTextureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(materialTextureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        // RGBA8 for material properties (roughness, metallic, ao, emission)
-        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, GL46.GL_RGBA8, width, height, 0, GL46.GL_RGBA, GL46.GL_UNSIGNED_BYTE, 0);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        // Kept out of the compact frame buffer along with the normals, it is only written as an image
+        if (layout.isCompact()) return;
         
-        GL46.glFramebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT2, GL46.GL_TEXTURE_2D, materialTextureId, 0);
+        gl.framebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT2, GL46.GL_TEXTURE_2D, materialTextureId, 0);
     }
     
     private void createMotionVectorAttachment() {
-        motionVectorTextureId = GL46.glGenTextures();
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, motionVectorTextureId);
-        
         // RG16F for motion vectors (x, y velocity)
-        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, GL46.GL_RG16F, width, height, 0, GL46.GL_RG, GL46.GL_HALF_FLOAT, 0);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        motionVectorTextureId = allocateTexture(GBufferLayout.MOTION_VECTOR_FORMAT);
+        gl.textureParameteri(motionVectorTextureId, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(motionVectorTextureId, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(motionVectorTextureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(motionVectorTextureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        GL46.glFramebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT3, GL46.GL_TEXTURE_2D, motionVectorTextureId, 0);
+        gl.framebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_COLOR_ATTACHMENT3, GL46.GL_TEXTURE_2D, motionVectorTextureId, 0);
     }
     
     private void createDepthAttachment() {
         // Create depth texture for sampling
-        depthTextureId = GL46.glGenTextures();
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, depthTextureId);
-        GL46.glTexImage2D(GL46.GL_TEXTURE_2D, 0, GL46.GL_DEPTH_COMPONENT32F, width, height, 0, GL46.GL_DEPTH_COMPONENT, GL46.GL_FLOAT, 0);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
-        GL46.glTexParameteri(GL46.GL_TEXTURE_2D, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
+        depthTextureId = allocateTexture(GBufferLayout.DEPTH_FORMAT);
+        gl.textureParameteri(depthTextureId, GL46.GL_TEXTURE_MIN_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(depthTextureId, GL46.GL_TEXTURE_MAG_FILTER, GL46.GL_LINEAR);
+        gl.textureParameteri(depthTextureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(depthTextureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        GL46.glFramebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_DEPTH_ATTACHMENT, GL46.GL_TEXTURE_2D, depthTextureId, 0);
+        gl.framebufferTexture2D(GL46.GL_FRAMEBUFFER, GL46.GL_DEPTH_ATTACHMENT, GL46.GL_TEXTURE_2D, depthTextureId, 0);
     }
     
-    private void setDrawBuffers() {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            IntBuffer drawBuffers = stack.mallocInt(4);
-            drawBuffers.put(GL46.GL_COLOR_ATTACHMENT0);  // Color
-            drawBuffers.put(GL46.GL_COLOR_ATTACHMENT1);  // Normal
-            drawBuffers.put(GL46.GL_COLOR_ATTACHMENT2);  // Material
-            drawBuffers.put(GL46.GL_COLOR_ATTACHMENT3);  // Motion Vector
-            drawBuffers.flip();
-            
-            GL46.glDrawBuffers(drawBuffers);
+    private int allocateTexture(int internalFormat) {
+        // Immutable storage either way, pooled textures survive resizes for reuse
+        if (texturePool != null) {
+            return texturePool.acquire("RTXFrameBuffer", internalFormat, width, height);
+        }
+        return TexturePool.createTexture(internalFormat, width, height);
+    }
+    
+    private void releaseTexture(int textureId) {
+        if (texturePool != null) {
+            texturePool.release(textureId);
+        } else {
+            GLStateCache.onTextureDeleted(textureId);
+            gl.deleteTextures(textureId);
         }
     }
     
+    private void setDrawBuffers() {
+        // Slots stay aligned with the attachment indices, compact normals and material aren't attached
+        gl.drawBuffers(new int[] {
+            GL46.GL_COLOR_ATTACHMENT0,  // Color
+            layout.isCompact() ? GL46.GL_NONE : GL46.GL_COLOR_ATTACHMENT1,  // Normal
+            layout.isCompact() ? GL46.GL_NONE : GL46.GL_COLOR_ATTACHMENT2,  // Material
+            GL46.GL_COLOR_ATTACHMENT3  // Motion Vector
+        });
+    }
+    
     public void bind() {
         if (!initialized) return;
-        GL46.glBindFramebuffer(GL46.GL_FRAMEBUFFER, framebufferId);
-        GL46.glViewport(0, 0, width, height);
+        gl.bindFramebuffer(GL46.GL_FRAMEBUFFER, framebufferId);
+        gl.viewport(0, 0, width, height);
     }
     
     public void unbind() {
-        GL46.glBindFramebuffer(GL46.GL_FRAMEBUFFER, 0);
+        gl.bindFramebuffer(GL46.GL_FRAMEBUFFER, 0);
     }
     
+    // Binds and clears every target, one at a time since glClear is undefined on the integer material target
     public void clear() {
         bind();
-        GL46.glClear(GL46.GL_COLOR_BUFFER_BIT | GL46.GL_DEPTH_BUFFER_BIT);
+        gl.clearBufferfv(GL46.GL_COLOR, COLOR_ATTACHMENT, CLEAR_COLOR);
+        if (layout.isCompact()) {
+            // Not attached in the compact layout, cleared as textures instead
+            gl.clearTexImage(normalTextureId, 0, GL46.GL_RG, GL46.GL_FLOAT, CLEAR_COLOR);
+            gl.clearTexImage(materialTextureId, 0, GL46.GL_RED_INTEGER, GL46.GL_UNSIGNED_INT, CLEAR_MATERIAL);
+        } else {
+            gl.clearBufferfv(GL46.GL_COLOR, NORMAL_ATTACHMENT, CLEAR_COLOR);
+            gl.clearBufferfv(GL46.GL_COLOR, MATERIAL_ATTACHMENT, CLEAR_COLOR);
+        }
+        gl.clearBufferfv(GL46.GL_COLOR, MOTION_VECTOR_ATTACHMENT, CLEAR_COLOR);
+        gl.clearBufferfv(GL46.GL_DEPTH, 0, CLEAR_DEPTH);
     }
     
     public void bindColorTexture(int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, colorTextureId);
+        GLStateCache.bindTexture(unit, colorTextureId);
     }
     
     public void bindNormalTexture(int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, normalTextureId);
+        GLStateCache.bindTexture(unit, normalTextureId);
     }
     
     public void bindMaterialTexture(int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, materialTextureId);
+        GLStateCache.bindTexture(unit, materialTextureId);
     }
     
     public void bindMotionVectorTexture(int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, motionVectorTextureId);
+        GLStateCache.bindTexture(unit, motionVectorTextureId);
     }
     
     public void bindDepthTexture(int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, depthTextureId);
+        GLStateCache.bindTexture(unit, depthTextureId);
     }
     
     public void bindAllTextures(int startUnit) {
@@ -218,38 +258,48 @@ public class RTXFrameBuffer {
     
     private void cleanup() {
         if (colorTextureId != 0) {
-            GL46.glDeleteTextures(colorTextureId);
+            releaseTexture(colorTextureId);
             colorTextureId = 0;
         }
         if (normalTextureId != 0) {
-            GL46.glDeleteTextures(normalTextureId);
+            releaseTexture(normalTextureId);
             normalTextureId = 0;
         }
         if (materialTextureId != 0) {
-            GL46.glDeleteTextures(materialTextureId);
+            releaseTexture(materialTextureId);
             materialTextureId = 0;
         }
         if (motionVectorTextureId != 0) {
-            GL46.glDeleteTextures(motionVectorTextureId);
+            releaseTexture(motionVectorTextureId);
             motionVectorTextureId = 0;
         }
         if (depthTextureId != 0) {
-            GL46.glDeleteTextures(depthTextureId);
+            releaseTexture(depthTextureId);
             depthTextureId = 0;
         }
         if (depthRenderbufferId != 0) {
-            GL46.glDeleteRenderbuffers(depthRenderbufferId);
+            gl.deleteRenderbuffers(depthRenderbufferId);
             depthRenderbufferId = 0;
         }
         if (framebufferId != 0) {
-            GL46.glDeleteFramebuffers(framebufferId);
+            gl.deleteFramebuffers(framebufferId);
             framebufferId = 0;
         }
     }
     
     public void delete() {
+        FrameBufferDeleteEvent event = new FrameBufferDeleteEvent();
+        event.begin();
+        
         cleanup();
         initialized = false;
+        
+        if (event.shouldCommit()) {
+            event.width = width;
+            event.height = height;
+            event.layout = layout.name();
+            event.commit();
+        }
         RTXMod.LOGGER.debug("Deleted RTX framebuffer");
     }
     
@@ -257,6 +307,8 @@ public class RTXFrameBuffer {
     public int getWidth() { return width; }
     public int getHeight() { return height; }
     public boolean isUseHDR() { return useHDR; }
+    public GBufferLayout getLayout() { return layout; }
+    public int getColorFormat() { return useHDR ? GL46.GL_RGBA16F : GL46.GL_RGBA8; }
     public boolean isInitialized() { return initialized; }
     public int getFramebufferId() { return framebufferId; }
     public int getColorTextureId() { return colorTextureId; }
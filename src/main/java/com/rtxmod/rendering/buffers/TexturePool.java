@@ -0,0 +1,160 @@
+package com.rtxmod.rendering.buffers;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.GLStateCache;
+import org.lwjgl.opengl.GL46;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pool of immutable-storage 2D textures grouped into size classes (format, width, height)
+ * Released textures stay allocated for a while so a resize back to a previous size reuses them
+ */
+public class TexturePool {
+    
+    // Idle textures are freed after this many frames without being reacquired
+    private static final int MAX_IDLE_FRAMES = 120;
+    
+    // Owner reported to the memory tracker while a texture sits in the pool
+    private static final String IDLE_OWNER = "TexturePool (idle)";
+    
+    private final GLBackend gl = GLBackend.get();
+    private final GPUMemoryTracker memoryTracker;
+    private final Map<Long, ArrayDeque<PooledTexture>> freeTextures = new HashMap<>();
+    private final Map<Integer, Long> liveTextures = new HashMap<>();
+    
+    private int frameIndex = 0;
+    private int allocationCount = 0;
+    private int reuseCount = 0;
+    
+    public TexturePool(GPUMemoryTracker memoryTracker) {
+        this.memoryTracker = memoryTracker;
+    }
+    
+    private static final class PooledTexture {
+        final int textureId;
+        final int releasedFrame;
+        
+        PooledTexture(int textureId, int releasedFrame) {
+            this.textureId = textureId;
+            this.releasedFrame = releasedFrame;
+        }
+    }
+    
+    public int acquire(String owner, int internalFormat, int width, int height) {
+        long sizeClass = sizeClass(internalFormat, width, height);
+        
+        ArrayDeque<PooledTexture> free = freeTextures.get(sizeClass);
+        PooledTexture pooled = free != null ? free.pollLast() : null;
+        
+        int textureId;
+        if (pooled != null) {
+            textureId = pooled.textureId;
+            memoryTracker.setOwner(GPUMemoryTracker.ResourceType.TEXTURE, textureId, owner);
+            reuseCount++;
+        } else {
+            textureId = createTexture(internalFormat, width, height);
+            memoryTracker.trackTexture(owner, textureId, internalFormat, width, height);
+            allocationCount++;
+        }
+        
+        liveTextures.put(textureId, sizeClass);
+        return textureId;
+    }
+    
+    public void release(int textureId) {
+        if (textureId == 0) return;
+        
+        Long sizeClass = liveTextures.remove(textureId);
+        if (sizeClass == null) {
+            // Not one of ours, nothing to reuse it for
+            GLStateCache.onTextureDeleted(textureId);
+            gl.deleteTextures(textureId);
+            return;
+        }
+        
+        memoryTracker.setOwner(GPUMemoryTracker.ResourceType.TEXTURE, textureId, IDLE_OWNER);
+        freeTextures.computeIfAbsent(sizeClass, key -> new ArrayDeque<>())
+            .addLast(new PooledTexture(textureId, frameIndex));
+    }
+    
+    public void endFrame() {
+        frameIndex++;
+        
+        // Nothing idle in steady state, skip creating the iterator
+        if (freeTextures.isEmpty()) return;
+        
+        Iterator<ArrayDeque<PooledTexture>> buckets = freeTextures.values().iterator();
+        while (buckets.hasNext()) {
+            ArrayDeque<PooledTexture> bucket = buckets.next();
+            
+            // Oldest releases sit at the head of each bucket
+            while (!bucket.isEmpty() && frameIndex - bucket.peekFirst().releasedFrame > MAX_IDLE_FRAMES) {
+                deleteTexture(bucket.pollFirst().textureId);
+            }
+            if (bucket.isEmpty()) {
+                buckets.remove();
+            }
+        }
+    }
+    
+    // Frees every idle texture now, used when memory is tight
+    public void trimIdle() {
+        for (ArrayDeque<PooledTexture> bucket : freeTextures.values()) {
+            for (PooledTexture pooled : bucket) {
+                deleteTexture(pooled.textureId);
+            }
+        }
+        freeTextures.clear();
+    }
+    
+    public void cleanup() {
+        trimIdle();
+        
+        if (!liveTextures.isEmpty()) {
+            RTXMod.LOGGER.warn("Texture pool cleaned up with {} textures still in use", liveTextures.size());
+            for (int textureId : liveTextures.keySet()) {
+                deleteTexture(textureId);
+            }
+            liveTextures.clear();
+        }
+        
+        RTXMod.LOGGER.debug("Texture pool released ({} allocations, {} reuses)", allocationCount, reuseCount);
+    }
+    
+    private void deleteTexture(int textureId) {
+        GLStateCache.onTextureDeleted(textureId);
+        gl.deleteTextures(textureId);
+        memoryTracker.untrack(GPUMemoryTracker.ResourceType.TEXTURE, textureId);
+    }
+    
+    // Created without binding, so the cached unit bindings stay valid
+    public static int createTexture(int internalFormat, int width, int height) {
+        GLBackend gl = GLBackend.get();
+        int textureId = gl.createTextures(GL46.GL_TEXTURE_2D);
+        gl.textureStorage2D(textureId, 1, internalFormat, width, height);
+        return textureId;
+    }
+    
+    private static long sizeClass(int internalFormat, int width, int height) {
+        // Format enum in the upper half, 16 bits per dimension covers every texture size GL allows
+        return ((long) internalFormat << 32) | ((long) (width & 0xFFFF) << 16) | (height & 0xFFFF);
+    }
+    
+    // Statistics
+    public int getAllocationCount() { return allocationCount; }
+    public int getReuseCount() { return reuseCount; }
+    public int getLiveTextureCount() { return liveTextures.size(); }
+    
+    public int getIdleTextureCount() {
+        int count = 0;
+        for (ArrayDeque<PooledTexture> bucket : freeTextures.values()) {
+            count += bucket.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,175 @@
+package com.rtxmod.rendering.pipeline;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.buffers.GPUMemoryTracker;
+import com.rtxmod.rendering.profiling.GPUProfiler;
+import com.rtxmod.rendering.profiling.RenderPhase;
+import com.rtxmod.rendering.shaders.RTXShaderManager;
+import com.rtxmod.rendering.shaders.RTXShaderProgram;
+import com.rtxmod.rendering.shaders.ShaderUniform;
+import com.rtxmod.util.GLBackend;
+
+import org.lwjgl.opengl.GL46;
+
+/**
+ * GPU auto-exposure using a log-luminance histogram and a single work group reduction
+ * The exposure value stays on the GPU, tone mapping reads it directly from a storage buffer
+ */
+public class AutoExposure {
+    
+    public static final int HISTOGRAM_BINS = 256;
+    public static final int EXPOSURE_BUFFER_BINDING = 2;
+    
+    private static final float MIN_LOG_LUMINANCE = -10.0f;
+    private static final float LOG_LUMINANCE_RANGE = 12.0f;
+    private static final float ADAPTATION_SPEED = 1.5f;
+    
+    private final GLBackend gl = GLBackend.get();
+    private final RTXShaderManager shaderManager;
+    private final GPUMemoryTracker memoryTracker;
+    private final GPUProfiler profiler;
+    
+    private int histogramBufferId = 0;
+    private int exposureBufferId = 0;
+    private boolean initialized = false;
+    private boolean historyValid = false;
+    private long lastUpdateTime = 0;
+    
+    // Uniform handles of both programs, re-resolved when a reload swaps them
+    private RTXShaderProgram resolvedHistogramProgram;
+    private ShaderUniform histogramMinLogLuminanceUniform;
+    private ShaderUniform histogramInverseRangeUniform;
+    private ShaderUniform histogramHDRSampler;
+    
+    private RTXShaderProgram resolvedAverageProgram;
+    private ShaderUniform averageMinLogLuminanceUniform;
+    private ShaderUniform averageRangeUniform;
+    private ShaderUniform averagePixelCountUniform;
+    private ShaderUniform averageAdaptationRateUniform;
+    private ShaderUniform averageResetHistoryUniform;
+    
+    public AutoExposure(RTXShaderManager shaderManager, GPUMemoryTracker memoryTracker, GPUProfiler profiler) {
+        this.shaderManager = shaderManager;
+        this.memoryTracker = memoryTracker;
+        this.profiler = profiler;
+    }
+    
+    public void initialize() {
+        if (initialized) return;
+        
+        // Histogram starts cleared, the reduction pass clears it again every frame
+        histogramBufferId = gl.genBuffers();
+        gl.bindBuffer(GL46.GL_SHADER_STORAGE_BUFFER, histogramBufferId);
+        gl.bufferData(GL46.GL_SHADER_STORAGE_BUFFER, new int[HISTOGRAM_BINS], GL46.GL_DYNAMIC_COPY);
+        memoryTracker.trackBuffer("AutoExposure", histogramBufferId, HISTOGRAM_BINS * Integer.BYTES);
+        
+        // averageLuminance, exposure
+        exposureBufferId = gl.genBuffers();
+        gl.bindBuffer(GL46.GL_SHADER_STORAGE_BUFFER, exposureBufferId);
+        gl.bufferData(GL46.GL_SHADER_STORAGE_BUFFER, new float[] { 1.0f, 1.0f }, GL46.GL_DYNAMIC_COPY);
+        memoryTracker.trackBuffer("AutoExposure", exposureBufferId, 2 * Float.BYTES);
+        
+        gl.bindBuffer(GL46.GL_SHADER_STORAGE_BUFFER, 0);
+        
+        historyValid = false;
+        initialized = true;
+    }
+    
+    public void update(int hdrTextureId, int width, int height) {
+        if (!initialized) return;
+        
+        RTXShaderProgram histogramShader = shaderManager.getShaderProgram(RTXShaderManager.LUMINANCE_HISTOGRAM_PROGRAM);
+        RTXShaderProgram averageShader = shaderManager.getShaderProgram(RTXShaderManager.EXPOSURE_AVERAGE_PROGRAM);
+        if (histogramShader == null || averageShader == null) {
+            RTXMod.LOGGER.warn("Auto-exposure shaders not available");
+            return;
+        }
+        
+        if (histogramShader != resolvedHistogramProgram) {
+            resolveHistogramUniforms(histogramShader);
+        }
+        if (averageShader != resolvedAverageProgram) {
+            resolveAverageUniforms(averageShader);
+        }
+        
+        long now = System.nanoTime();
+        float deltaSeconds = lastUpdateTime == 0 ? 0.0f : (now - lastUpdateTime) / 1_000_000_000.0f;
+        lastUpdateTime = now;
+        
+        // Pass 1: histogram of the HDR image
+        profiler.begin(RenderPhase.AUTO_EXPOSURE);
+        histogramShader.bind();
+        histogramMinLogLuminanceUniform.set(MIN_LOG_LUMINANCE);
+        histogramInverseRangeUniform.set(1.0f / LOG_LUMINANCE_RANGE);
+        histogramShader.bindTexture(histogramHDRSampler, hdrTextureId, 0);
+        histogramShader.bindSSBO(histogramBufferId, 0);
+        
+        shaderManager.dispatch2D(histogramShader, width, height);
+        gl.memoryBarrier(GL46.GL_SHADER_STORAGE_BARRIER_BIT);
+        
+        // Pass 2: single work group reduction into the exposure buffer
+        averageShader.bind();
+        averageMinLogLuminanceUniform.set(MIN_LOG_LUMINANCE);
+        averageRangeUniform.set(LOG_LUMINANCE_RANGE);
+        averagePixelCountUniform.set((float) width * height);
+        averageAdaptationRateUniform.set(1.0f - (float) Math.exp(-deltaSeconds * ADAPTATION_SPEED));
+        averageResetHistoryUniform.set(!historyValid);
+        averageShader.bindSSBO(histogramBufferId, 0);
+        averageShader.bindSSBO(exposureBufferId, 1);
+        
+        gl.dispatchCompute(1, 1, 1);
+        gl.memoryBarrier(GL46.GL_SHADER_STORAGE_BARRIER_BIT);
+        
+        profiler.end(RenderPhase.AUTO_EXPOSURE);
+        
+        historyValid = true;
+    }
+    
+    private void resolveHistogramUniforms(RTXShaderProgram program) {
+        histogramMinLogLuminanceUniform = program.getUniform("uMinLogLuminance");
+        histogramInverseRangeUniform = program.getUniform("uInverseLogLuminanceRange");
+        histogramHDRSampler = program.getUniform("uHDRTexture");
+        resolvedHistogramProgram = program;
+    }
+    
+    private void resolveAverageUniforms(RTXShaderProgram program) {
+        averageMinLogLuminanceUniform = program.getUniform("uMinLogLuminance");
+        averageRangeUniform = program.getUniform("uLogLuminanceRange");
+        averagePixelCountUniform = program.getUniform("uPixelCount");
+        averageAdaptationRateUniform = program.getUniform("uAdaptationRate");
+        averageResetHistoryUniform = program.getUniform("uResetHistory");
+        resolvedAverageProgram = program;
+    }
+    
+    public void bindExposureBuffer() {
+        gl.bindBufferBase(GL46.GL_SHADER_STORAGE_BUFFER, EXPOSURE_BUFFER_BINDING, exposureBufferId);
+    }
+    
+    public void reset() {
+        historyValid = false;
+        lastUpdateTime = 0;
+    }
+    
+    public void cleanup() {
+        if (!initialized) return;
+        
+        if (histogramBufferId != 0) {
+            gl.deleteBuffers(histogramBufferId);
+            memoryTracker.untrack(GPUMemoryTracker.ResourceType.BUFFER, histogramBufferId);
+            histogramBufferId = 0;
+        }
+        if (exposureBufferId != 0) {
+            gl.deleteBuffers(exposureBufferId);
+            memoryTracker.untrack(GPUMemoryTracker.ResourceType.BUFFER, exposureBufferId);
+            exposureBufferId = 0;
+        }
+        resolvedHistogramProgram = null;
+        resolvedAverageProgram = null;
+        
+        initialized = false;
+    }
+    
+    public boolean isInitialized() {
+        return initialized;
+    }
+}
@@ -1,10 +1,18 @@
 package com.rtxmod.rendering.pipeline;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.config.RTXConfig;
+import com.rtxmod.rendering.buffers.GPUMemoryTracker;
 import com.rtxmod.rendering.buffers.RTXFrameBuffer;
+import com.rtxmod.rendering.buffers.TexturePool;
+import com.rtxmod.rendering.profiling.GPUProfiler;
+import com.rtxmod.rendering.profiling.RenderPhase;
 import com.rtxmod.rendering.shaders.RTXShaderManager;
 import com.rtxmod.rendering.shaders.RTXShaderProgram;
+import com.rtxmod.rendering.shaders.ShaderUniform;
+import com.rtxmod.util.GLBackend;
 
+import org.joml.Vector2f;
 import org.lwjgl.opengl.GL46;
 
 /**
@@ -12,14 +20,108 @@ import org.lwjgl.opengl.GL46;
  */
 public class PostProcessingPipeline {
     
+    // Per-pixel stages of the post-processing kernel, fusable into a single dispatch
+    public static final int STAGE_ACCUMULATION = 1;
+    public static final int STAGE_EXPOSURE = 1 << 1;
+    public static final int STAGE_TONEMAP = 1 << 2;
+    
+    private final GLBackend gl = GLBackend.get();
     private final RTXShaderManager shaderManager;
+    private final RTXConfig config;
+    private final TexturePool texturePool;
+    private final AutoExposure autoExposure;
+    private final GPUProfiler profiler;
     
     private boolean initialized = false;
     private int temporalFrameCount = 0;
     private float temporalBlendFactor = 0.9f;
     
-    public PostProcessingPipeline(RTXShaderManager shaderManager) {
+    // 2^compensation, recomputed when the setting changes rather than every dispatch
+    private float exposureScale = 1.0f;
+    
+    // Pipeline targets: a ping-pong scratch image and two luminance moment histories
+    private int scratchTextureId = 0;
+    private final int[] momentsTextureIds = new int[2];
+    private int momentsIndex = 0;
+    private int targetWidth = 0;
+    private int targetHeight = 0;
+    private boolean denoiserHistoryValid = false;
+    
+    // Sub-pixel jitter of the last frame and how far this frame moved from it, in traced pixels
+    private final Vector2f previousJitter = new Vector2f();
+    private final Vector2f jitterDelta = new Vector2f();
+    
+    // Upscaler history at output resolution, ping-ponged between frames
+    private final int[] upscaleHistoryTextureIds = new int[2];
+    private int upscaleHistoryIndex = 0;
+    private int upscaleWidth = 0;
+    private int upscaleHeight = 0;
+    private boolean upscaleHistoryValid = false;
+    
+    // Uniform handles of each program, re-resolved when a reload swaps it
+    private RTXShaderProgram resolvedPostProgram;
+    private ShaderUniform postStagesUniform;
+    private ShaderUniform postWriteHistoryUniform;
+    private ShaderUniform postBlendFactorUniform;
+    private ShaderUniform postFrameCountUniform;
+    private ShaderUniform postJitterDeltaUniform;
+    private ShaderUniform postAutoExposureUniform;
+    private ShaderUniform postExposureUniform;
+    private ShaderUniform postGammaUniform;
+    private ShaderUniform postContrastUniform;
+    private ShaderUniform postSaturationUniform;
+    private ShaderUniform postPreviousFrameSampler;
+    private ShaderUniform postMotionVectorsSampler;
+    private ShaderUniform postColorImage;
+    private ShaderUniform postHistoryImage;
+    
+    private RTXShaderProgram resolvedDenoisingProgram;
+    private ShaderUniform denoiseColorPhiUniform;
+    private ShaderUniform denoiseNormalPhiUniform;
+    private ShaderUniform denoiseDepthPhiUniform;
+    private ShaderUniform denoiseMomentsAlphaUniform;
+    private ShaderUniform denoiseResetHistoryUniform;
+    private ShaderUniform denoiseJitterDeltaUniform;
+    private ShaderUniform denoisePassUniform;
+    private ShaderUniform denoiseStepSizeUniform;
+    private ShaderUniform denoiseFinalIterationUniform;
+    private ShaderUniform denoiseColorSampler;
+    private ShaderUniform denoiseNormalSampler;
+    private ShaderUniform denoiseMaterialSampler;
+    private ShaderUniform denoiseDepthSampler;
+    private ShaderUniform denoiseMotionVectorsSampler;
+    private ShaderUniform denoisePreviousMomentsSampler;
+    private ShaderUniform denoiseOutputImage;
+    private ShaderUniform denoiseMomentsImage;
+    
+    private RTXShaderProgram resolvedUpscalingProgram;
+    private ShaderUniform upscaleJitterUniform;
+    private ShaderUniform upscaleSharpnessUniform;
+    private ShaderUniform upscaleResetHistoryUniform;
+    private ShaderUniform upscaleLowResSampler;
+    private ShaderUniform upscaleMotionVectorsSampler;
+    private ShaderUniform upscaleHistorySampler;
+    private ShaderUniform upscaleOutputImage;
+    private ShaderUniform upscaleHistoryImage;
+    
+    public PostProcessingPipeline(RTXShaderManager shaderManager, RTXConfig config, TexturePool texturePool,
+                                  GPUMemoryTracker memoryTracker, GPUProfiler profiler) {
         this.shaderManager = shaderManager;
+        this.config = config;
+        this.texturePool = texturePool;
+        this.profiler = profiler;
+        this.autoExposure = new AutoExposure(shaderManager, memoryTracker, profiler);
+        
+        updateExposureScale();
+        config.addListener(setting -> {
+            if (setting == RTXConfig.Setting.EXPOSURE_COMPENSATION) {
+                updateExposureScale();
+            }
+        });
+    }
+    
+    private void updateExposureScale() {
+        exposureScale = (float) Math.pow(2.0, config.getExposureCompensation());
     }
     
     public void initialize() {
@@ -29,167 +131,404 @@ public class PostProcessingPipeline {
             RTXMod.LOGGER.info("Initializing Post-Processing Pipeline...");
             
             // Initialize any pipeline-specific resources here
+            autoExposure.initialize();
             
             initialized = true;
             RTXMod.LOGGER.info("Post-Processing Pipeline initialization complete!");
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to initialize Post-Processing Pipeline: ", e);
             initialized = false;
         }
     }
     
-    public void process(RTXFrameBuffer primaryBuffer, RTXFrameBuffer temporalBuffer, float tickDelta) {
+    public void process(RTXFrameBuffer primaryBuffer, RTXFrameBuffer temporalBuffer, RTXFrameBuffer outputBuffer,
+                        Vector2f jitter, float tickDelta) {
         if (!initialized) return;
         
         temporalFrameCount++;
         
-        // Step 1: Temporal Accumulation
-        if (temporalFrameCount > 1) {
-            performTemporalAccumulation(primaryBuffer, temporalBuffer, tickDelta);
+        // History was traced at last frame's jitter, reprojection shifts by the difference to line it up
+        jitter.sub(previousJitter, jitterDelta);
+        previousJitter.set(jitter);
+        
+        int accumulationStage = temporalFrameCount > 1 ? STAGE_ACCUMULATION : 0;
+        boolean denoise = config.isDenoisingEnabled();
+        boolean upscale = outputBuffer != null && config.isTemporalUpsamplingEnabled();
+        
+        // Exposure and tone mapping run last, the upscaler rectifies its history against linear HDR color
+        RTXFrameBuffer displayBuffer = upscale ? outputBuffer : primaryBuffer;
+        
+        if (config.isFusedPostProcessingEnabled()) {
+            // Per-pixel stages share a dispatch unless denoising or upscaling needs the neighborhood in between
+            if (denoise) {
+                performPixelStages(primaryBuffer, temporalBuffer, accumulationStage, false, tickDelta);
+                performDenoising(primaryBuffer, temporalBuffer, tickDelta);
+            } else {
+                int stages = upscale ? accumulationStage : accumulationStage | STAGE_EXPOSURE | STAGE_TONEMAP;
+                performPixelStages(primaryBuffer, temporalBuffer, stages, true, tickDelta);
+            }
+            
+            if (upscale) {
+                performUpscaling(primaryBuffer, outputBuffer, jitter, tickDelta);
+            }
+            if (denoise || upscale) {
+                performPixelStages(displayBuffer, temporalBuffer, STAGE_EXPOSURE | STAGE_TONEMAP, false, tickDelta);
+            }
+        } else {
+            // Step 1: Temporal Accumulation
+            performPixelStages(primaryBuffer, temporalBuffer, accumulationStage, false, tickDelta);
+            
+            // Step 2: Denoising (feeds the history from its first iteration)
+            if (denoise) {
+                performDenoising(primaryBuffer, temporalBuffer, tickDelta);
+            } else {
+                storeHistory(primaryBuffer.getColorTextureId(), temporalBuffer);
+            }
+            
+            // Step 3: Temporal upscaling to output resolution
+            if (upscale) {
+                performUpscaling(primaryBuffer, outputBuffer, jitter, tickDelta);
+            }
+            
+            // Step 4: Exposure and Tone Mapping
+            performPixelStages(displayBuffer, temporalBuffer, STAGE_EXPOSURE, false, tickDelta);
+            performPixelStages(displayBuffer, temporalBuffer, STAGE_TONEMAP, false, tickDelta);
         }
-        
-        // Step 2: Denoising
-        performDenoising(primaryBuffer, tickDelta);
-        
-        // Step 3: Tone Mapping and Final Processing
-        performToneMapping(primaryBuffer, tickDelta);
-        
-        // Step 4: Optional AI Upscaling
-        // performUpscaling(primaryBuffer, tickDelta);
     }
     
-    private void performTemporalAccumulation(RTXFrameBuffer currentBuffer, RTXFrameBuffer previousBuffer, float tickDelta) {
-        RTXShaderProgram temporalShader = shaderManager.getShaderProgram(RTXShaderManager.TEMPORAL_ACCUMULATION_PROGRAM);
-        if (temporalShader == null) {
-            RTXMod.LOGGER.warn("Temporal accumulation shader not available");
+    private void performPixelStages(RTXFrameBuffer currentBuffer, RTXFrameBuffer previousBuffer, int stages,
+                                    boolean writeHistory, float tickDelta) {
+        if (stages == 0 && !writeHistory) return;
+        
+        RTXShaderProgram postShader = shaderManager.getShaderProgram(RTXShaderManager.POST_PROCESS_PROGRAM);
+        if (postShader == null) {
+            RTXMod.LOGGER.warn("Post-processing shader not available");
             return;
         }
         
-        temporalShader.bind();
+        int width = currentBuffer.getWidth();
+        int height = currentBuffer.getHeight();
         
-        // Set uniforms
-        temporalShader.setUniform("uBlendFactor", temporalBlendFactor);
-        temporalShader.setUniform("uFrameCount", temporalFrameCount);
-        temporalShader.setUniform("uTickDelta", tickDelta);
+        // Measure the HDR image right before exposure is applied, the result stays on the GPU
+        boolean useAutoExposure = (stages & STAGE_EXPOSURE) != 0 && config.isAutoExposureEnabled();
+        if (useAutoExposure) {
+            autoExposure.update(currentBuffer.getColorTextureId(), width, height);
+        }
         
-        // Bind input textures
-        temporalShader.bindTexture("uCurrentFrame", currentBuffer.getColorTextureId(), 0);
-        temporalShader.bindTexture("uPreviousFrame", previousBuffer.getColorTextureId(), 1);
-        temporalShader.bindTexture("uMotionVectors", currentBuffer.getMotionVectorTextureId(), 2);
+        if (postShader != resolvedPostProgram) {
+            resolvePostUniforms(postShader);
+        }
         
-        // Bind output image
-        temporalShader.bindImage("img_output", currentBuffer.getColorTextureId(), 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        profiler.begin(RenderPhase.POST_PROCESS);
+        postShader.bind();
+        
+        postStagesUniform.set(stages);
+        postWriteHistoryUniform.set(writeHistory);
+        
+        // Temporal accumulation parameters
+        postBlendFactorUniform.set(temporalBlendFactor);
+        postFrameCountUniform.set(temporalFrameCount);
+        postJitterDeltaUniform.set(jitterDelta);
+        postShader.bindTexture(postPreviousFrameSampler, previousBuffer.getColorTextureId(), 0);
+        postShader.bindTexture(postMotionVectorsSampler, currentBuffer.getMotionVectorTextureId(), 1);
+        
+        // Tone mapping parameters
+        postAutoExposureUniform.set(useAutoExposure);
+        postExposureUniform.set(exposureScale);
+        autoExposure.bindExposureBuffer();
+        postGammaUniform.set(2.2f);
+        postContrastUniform.set(1.0f);
+        postSaturationUniform.set(1.0f);
+        
+        // The color target is updated in place; the history can't be, other pixels still reproject from it
+        postShader.bindImage(postColorImage, currentBuffer.getColorTextureId(), 0, GL46.GL_READ_WRITE, GL46.GL_RGBA16F);
+        if (writeHistory) {
+            ensureTargets(width, height);
+            postShader.bindImage(postHistoryImage, scratchTextureId, 1, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        }
         
         // Dispatch compute shader
-        int workGroupsX = (currentBuffer.getWidth() + 15) / 16;
-        int workGroupsY = (currentBuffer.getHeight() + 15) / 16;
-        
-        GL46.glDispatchCompute(workGroupsX, workGroupsY, 1);
-        GL46.glMemoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+        shaderManager.dispatch2D(postShader, width, height);
+        gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
         
-        temporalShader.unbind();
-        
-        RTXMod.LOGGER.debug("Temporal accumulation pass completed");
+        if (writeHistory) {
+            storeHistory(scratchTextureId, previousBuffer);
+        }
+        profiler.end(RenderPhase.POST_PROCESS);
     }
     
-    private void performDenoising(RTXFrameBuffer frameBuffer, float tickDelta) {
+    private void resolvePostUniforms(RTXShaderProgram program) {
+        postStagesUniform = program.getUniform("uStages");
+        postWriteHistoryUniform = program.getUniform("uWriteHistory");
+        postBlendFactorUniform = program.getUniform("uBlendFactor");
+        postFrameCountUniform = program.getUniform("uFrameCount");
+        postJitterDeltaUniform = program.getUniform("uJitterDelta");
+        postAutoExposureUniform = program.getUniform("uAutoExposure");
+        postExposureUniform = program.getUniform("uExposure");
+        postGammaUniform = program.getUniform("uGamma");
+        postContrastUniform = program.getUniform("uContrast");
+        postSaturationUniform = program.getUniform("uSaturation");
+        postPreviousFrameSampler = program.getUniform("uPreviousFrame");
+        postMotionVectorsSampler = program.getUniform("uMotionVectors");
+        postColorImage = program.getUniform("img_color");
+        postHistoryImage = program.getUniform("img_history");
+        resolvedPostProgram = program;
+    }
+    
+    private void performDenoising(RTXFrameBuffer frameBuffer, RTXFrameBuffer historyBuffer, float tickDelta) {
         RTXShaderProgram denoisingShader = shaderManager.getShaderProgram(RTXShaderManager.DENOISING_PROGRAM);
         if (denoisingShader == null) {
             RTXMod.LOGGER.warn("Denoising shader not available");
             return;
         }
         
-        denoisingShader.bind();
+        profiler.begin(RenderPhase.DENOISE);
+        int width = frameBuffer.getWidth();
+        int height = frameBuffer.getHeight();
+        ensureTargets(width, height);
         
-        // Set denoising parameters
-        denoisingShader.setUniform("uFilterStrength", 1.0f);
-        denoisingShader.setUniform("uTemporalStrength", 0.8f);
-        denoisingShader.setUniform("uFrameCount", temporalFrameCount);
-        denoisingShader.setUniform("uTickDelta", tickDelta);
-        
-        // Bind input textures
-        denoisingShader.bindTexture("uColorTexture", frameBuffer.getColorTextureId(), 0);
-        denoisingShader.bindTexture("uNormalTexture", frameBuffer.getNormalTextureId(), 1);
-        denoisingShader.bindTexture("uMaterialTexture", frameBuffer.getMaterialTextureId(), 2);
-        denoisingShader.bindTexture("uDepthTexture", frameBuffer.getDepthTextureId(), 3);
-        
-        // Bind output image
-        denoisingShader.bindImage("img_output", frameBuffer.getColorTextureId(), 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        if (denoisingShader != resolvedDenoisingProgram) {
+            resolveDenoisingUniforms(denoisingShader);
+        }
+        denoisingShader.bind();
         
-        // Dispatch compute shader
-        int workGroupsX = (frameBuffer.getWidth() + 15) / 16;
-        int workGroupsY = (frameBuffer.getHeight() + 15) / 16;
+        // Set edge-stopping parameters
+        denoiseColorPhiUniform.set(config.denoiserColorPhi);
+        denoiseNormalPhiUniform.set(config.denoiserNormalPhi);
+        denoiseDepthPhiUniform.set(config.denoiserDepthPhi);
+        denoiseMomentsAlphaUniform.set(0.2f);
+        denoiseResetHistoryUniform.set(!denoiserHistoryValid);
+        denoiseJitterDeltaUniform.set(jitterDelta);
+        
+        // Bind G-buffer inputs shared by every pass
+        denoisingShader.bindTexture(denoiseNormalSampler, frameBuffer.getNormalTextureId(), 1);
+        denoisingShader.bindTexture(denoiseMaterialSampler, frameBuffer.getMaterialTextureId(), 2);
+        denoisingShader.bindTexture(denoiseDepthSampler, frameBuffer.getDepthTextureId(), 3);
+        denoisingShader.bindTexture(denoiseMotionVectorsSampler, frameBuffer.getMotionVectorTextureId(), 4);
+        denoisingShader.bindTexture(denoisePreviousMomentsSampler, momentsTextureIds[momentsIndex], 5);
+        
+        // Pass 0: temporal variance estimation into the scratch image's alpha channel
+        int source = frameBuffer.getColorTextureId();
+        int target = scratchTextureId;
+        
+        denoisePassUniform.set(0);
+        denoisingShader.bindTexture(denoiseColorSampler, source, 0);
+        denoisingShader.bindImage(denoiseOutputImage, target, 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        denoisingShader.bindImage(denoiseMomentsImage, momentsTextureIds[1 - momentsIndex], 1, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        
+        shaderManager.dispatch2D(denoisingShader, width, height);
+        gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
+        
+        // Passes 1..N: a-trous iterations, ping-ponging between the color and scratch images
+        int iterations = config.getDenoiserIterations();
+        for (int i = 0; i < iterations; i++) {
+            int swap = source;
+            source = target;
+            target = swap;
+            
+            denoisePassUniform.set(i + 1);
+            denoiseStepSizeUniform.set(1 << i);
+            denoiseFinalIterationUniform.set(i == iterations - 1);
+            denoisingShader.bindTexture(denoiseColorSampler, source, 0);
+            denoisingShader.bindImage(denoiseOutputImage, target, 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+            
+            shaderManager.dispatch2D(denoisingShader, width, height);
+            gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
+            
+            // The first iteration is smooth enough to feed back, later ones would over-blur the history
+            if (i == 0) {
+                storeHistory(target, historyBuffer);
+            }
+        }
         
-        GL46.glDispatchCompute(workGroupsX, workGroupsY, 1);
-        GL46.glMemoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+        // Make sure the final result ends up in the frame buffer's color attachment
+        if (target != frameBuffer.getColorTextureId()) {
+            gl.memoryBarrier(GL46.GL_TEXTURE_UPDATE_BARRIER_BIT);
+            gl.copyImageSubData(target, GL46.GL_TEXTURE_2D, 0, 0, 0, 0,
+                frameBuffer.getColorTextureId(), GL46.GL_TEXTURE_2D, 0, 0, 0, 0, width, height, 1);
+        }
         
-        denoisingShader.unbind();
+        momentsIndex = 1 - momentsIndex;
+        denoiserHistoryValid = true;
+        profiler.end(RenderPhase.DENOISE);
+    }
+    
+    private void resolveDenoisingUniforms(RTXShaderProgram program) {
+        denoiseColorPhiUniform = program.getUniform("uColorPhi");
+        denoiseNormalPhiUniform = program.getUniform("uNormalPhi");
+        denoiseDepthPhiUniform = program.getUniform("uDepthPhi");
+        denoiseMomentsAlphaUniform = program.getUniform("uMomentsAlpha");
+        denoiseResetHistoryUniform = program.getUniform("uResetHistory");
+        denoiseJitterDeltaUniform = program.getUniform("uJitterDelta");
+        denoisePassUniform = program.getUniform("uPass");
+        denoiseStepSizeUniform = program.getUniform("uStepSize");
+        denoiseFinalIterationUniform = program.getUniform("uFinalIteration");
+        denoiseColorSampler = program.getUniform("uColorTexture");
+        denoiseNormalSampler = program.getUniform("uNormalTexture");
+        denoiseMaterialSampler = program.getUniform("uMaterialTexture");
+        denoiseDepthSampler = program.getUniform("uDepthTexture");
+        denoiseMotionVectorsSampler = program.getUniform("uMotionVectors");
+        denoisePreviousMomentsSampler = program.getUniform("uPreviousMoments");
+        denoiseOutputImage = program.getUniform("img_output");
+        denoiseMomentsImage = program.getUniform("img_moments");
+        resolvedDenoisingProgram = program;
+    }
+    
+    private void storeHistory(int sourceTextureId, RTXFrameBuffer historyBuffer) {
+        if (historyBuffer == null || !historyBuffer.isInitialized()) return;
         
-        RTXMod.LOGGER.debug("Denoising pass completed");
+        gl.memoryBarrier(GL46.GL_TEXTURE_UPDATE_BARRIER_BIT);
+        gl.copyImageSubData(sourceTextureId, GL46.GL_TEXTURE_2D, 0, 0, 0, 0,
+            historyBuffer.getColorTextureId(), GL46.GL_TEXTURE_2D, 0, 0, 0, 0,
+            historyBuffer.getWidth(), historyBuffer.getHeight(), 1);
     }
     
-    private void performToneMapping(RTXFrameBuffer frameBuffer, float tickDelta) {
-        RTXShaderProgram toneMappingShader = shaderManager.getShaderProgram(RTXShaderManager.TONE_MAPPING_PROGRAM);
-        if (toneMappingShader == null) {
-            RTXMod.LOGGER.warn("Tone mapping shader not available");
+    private void ensureTargets(int width, int height) {
+        if (scratchTextureId != 0 && width == targetWidth && height == targetHeight) {
             return;
         }
         
-        // For tone mapping, we'll use a traditional vertex/fragment shader approach
-        // This would render to the default framebuffer or a final output buffer
+        deleteTargets();
         
-        toneMappingShader.bind();
+        scratchTextureId = createTarget(width, height, GL46.GL_NEAREST);
+        momentsTextureIds[0] = createTarget(width, height, GL46.GL_NEAREST);
+        momentsTextureIds[1] = createTarget(width, height, GL46.GL_NEAREST);
+        momentsIndex = 0;
+        targetWidth = width;
+        targetHeight = height;
+        denoiserHistoryValid = false;
         
-        // Set tone mapping parameters
-        toneMappingShader.setUniform("uExposure", 1.0f);
-        toneMappingShader.setUniform("uGamma", 2.2f);
-        toneMappingShader.setUniform("uContrast", 1.0f);
-        toneMappingShader.setUniform("uSaturation", 1.0f);
-        
-        // Bind HDR input texture
-        toneMappingShader.bindTexture("uHDRTexture", frameBuffer.getColorTextureId(), 0);
-        
-        // Render fullscreen quad (this would be implemented with a proper quad renderer)
-        // For now, we'll just unbind the shader
+        RTXMod.LOGGER.debug("Created post-processing targets {}x{}", width, height);
+    }
+    
+    private int createTarget(int width, int height, int filter) {
+        int textureId = texturePool.acquire("PostProcessingPipeline", GL46.GL_RGBA16F, width, height);
         
-        toneMappingShader.unbind();
+        gl.textureParameteri(textureId, GL46.GL_TEXTURE_MIN_FILTER, filter);
+        gl.textureParameteri(textureId, GL46.GL_TEXTURE_MAG_FILTER, filter);
+        gl.textureParameteri(textureId, GL46.GL_TEXTURE_WRAP_S, GL46.GL_CLAMP_TO_EDGE);
+        gl.textureParameteri(textureId, GL46.GL_TEXTURE_WRAP_T, GL46.GL_CLAMP_TO_EDGE);
         
-        RTXMod.LOGGER.debug("Tone mapping pass completed");
+        return textureId;
     }
     
-    private void performUpscaling(RTXFrameBuffer frameBuffer, float tickDelta) {
+    private void deleteTargets() {
+        if (scratchTextureId != 0) {
+            texturePool.release(scratchTextureId);
+            scratchTextureId = 0;
+        }
+        for (int i = 0; i < momentsTextureIds.length; i++) {
+            if (momentsTextureIds[i] != 0) {
+                texturePool.release(momentsTextureIds[i]);
+                momentsTextureIds[i] = 0;
+            }
+        }
+        targetWidth = 0;
+        targetHeight = 0;
+    }
+    
+    private void performUpscaling(RTXFrameBuffer inputBuffer, RTXFrameBuffer outputBuffer, Vector2f jitter, float tickDelta) {
         RTXShaderProgram upscalingShader = shaderManager.getShaderProgram(RTXShaderManager.UPSCALING_PROGRAM);
         if (upscalingShader == null) {
             RTXMod.LOGGER.warn("Upscaling shader not available");
             return;
         }
         
+        profiler.begin(RenderPhase.UPSCALE);
+        int width = outputBuffer.getWidth();
+        int height = outputBuffer.getHeight();
+        ensureUpscaleTargets(width, height);
+        
+        int previousHistory = upscaleHistoryTextureIds[upscaleHistoryIndex];
+        int nextHistory = upscaleHistoryTextureIds[1 - upscaleHistoryIndex];
+        
+        if (upscalingShader != resolvedUpscalingProgram) {
+            resolveUpscalingUniforms(upscalingShader);
+        }
         upscalingShader.bind();
         
         // Set upscaling parameters
-        upscalingShader.setUniform("uUpscaleFactor", 2.0f);
-        upscalingShader.setUniform("uSharpness", 0.5f);
-        upscalingShader.setUniform("uFrameCount", temporalFrameCount);
+        upscaleJitterUniform.set(jitter);
+        upscaleSharpnessUniform.set(0.5f);
+        upscaleResetHistoryUniform.set(!upscaleHistoryValid);
         
         // Bind input textures
-        upscalingShader.bindTexture("uLowResTexture", frameBuffer.getColorTextureId(), 0);
-        upscalingShader.bindTexture("uMotionVectors", frameBuffer.getMotionVectorTextureId(), 1);
+        upscalingShader.bindTexture(upscaleLowResSampler, inputBuffer.getColorTextureId(), 0);
+        upscalingShader.bindTexture(upscaleMotionVectorsSampler, inputBuffer.getMotionVectorTextureId(), 1);
+        upscalingShader.bindTexture(upscaleHistorySampler, previousHistory, 2);
+        
+        // Bind output images
+        upscalingShader.bindImage(upscaleOutputImage, outputBuffer.getColorTextureId(), 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        upscalingShader.bindImage(upscaleHistoryImage, nextHistory, 1, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
+        
+        // Dispatch compute shader over the output resolution
+        shaderManager.dispatch2D(upscalingShader, width, height);
+        gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
+        
+        upscaleHistoryIndex = 1 - upscaleHistoryIndex;
+        upscaleHistoryValid = true;
+        profiler.end(RenderPhase.UPSCALE);
+    }
+    
+    private void resolveUpscalingUniforms(RTXShaderProgram program) {
+        upscaleJitterUniform = program.getUniform("uJitter");
+        upscaleSharpnessUniform = program.getUniform("uSharpness");
+        upscaleResetHistoryUniform = program.getUniform("uResetHistory");
+        upscaleLowResSampler = program.getUniform("uLowResTexture");
+        upscaleMotionVectorsSampler = program.getUniform("uMotionVectors");
+        upscaleHistorySampler = program.getUniform("uHistoryTexture");
+        upscaleOutputImage = program.getUniform("img_output");
+        upscaleHistoryImage = program.getUniform("img_history");
+        resolvedUpscalingProgram = program;
+    }
+    
+    private void ensureUpscaleTargets(int width, int height) {
+        if (upscaleHistoryTextureIds[0] != 0 && width == upscaleWidth && height == upscaleHeight) {
+            return;
+        }
         
-        // This would output to a higher resolution buffer
-        // For now, we'll just process in place
+        deleteUpscaleTargets();
         
-        upscalingShader.unbind();
+        // History is resampled at sub-pixel positions, so it needs bilinear filtering
+        upscaleHistoryTextureIds[0] = createTarget(width, height, GL46.GL_LINEAR);
+        upscaleHistoryTextureIds[1] = createTarget(width, height, GL46.GL_LINEAR);
+        upscaleHistoryIndex = 0;
+        upscaleWidth = width;
+        upscaleHeight = height;
+        upscaleHistoryValid = false;
         
-        RTXMod.LOGGER.debug("Upscaling pass completed");
+        RTXMod.LOGGER.debug("Created upscaler history targets {}x{}", width, height);
+    }
+    
+    private void deleteUpscaleTargets() {
+        for (int i = 0; i < upscaleHistoryTextureIds.length; i++) {
+            if (upscaleHistoryTextureIds[i] != 0) {
+                texturePool.release(upscaleHistoryTextureIds[i]);
+                upscaleHistoryTextureIds[i] = 0;
+            }
+        }
+        upscaleWidth = 0;
+        upscaleHeight = 0;
     }
     
     public void onResize(int width, int height) {
         // Handle pipeline resize if needed
         RTXMod.LOGGER.debug("Post-processing pipeline resize: {}x{}", width, height);
         
-        // Reset temporal accumulation on resize
+        onRenderResolutionChanged();
+        onOutputResolutionChanged();
+    }
+    
+    // Accumulation and denoiser history live at the traced resolution
+    public void onRenderResolutionChanged() {
         temporalFrameCount = 0;
+        denoiserHistoryValid = false;
+    }
+    
+    // Upscaler history lives at the output resolution
+    public void onOutputResolutionChanged() {
+        upscaleHistoryValid = false;
     }
     
     public void cleanup() {
@@ -198,6 +537,12 @@ public class PostProcessingPipeline {
         RTXMod.LOGGER.info("Cleaning up Post-Processing Pipeline...");
         
         // Cleanup pipeline-specific resources
+        autoExposure.cleanup();
+        deleteTargets();
+        deleteUpscaleTargets();
+        resolvedPostProgram = null;
+        resolvedDenoisingProgram = null;
+        resolvedUpscalingProgram = null;
         
         initialized = false;
         RTXMod.LOGGER.info("Post-Processing Pipeline cleanup complete");
@@ -218,6 +563,9 @@ public class PostProcessingPipeline {
     
     public void resetTemporalAccumulation() {
         temporalFrameCount = 0;
+        denoiserHistoryValid = false;
+        upscaleHistoryValid = false;
+        autoExposure.reset();
         RTXMod.LOGGER.debug("Temporal accumulation reset");
     }
     
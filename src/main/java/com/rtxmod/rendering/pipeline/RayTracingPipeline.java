@@ -1,12 +1,18 @@
 package com.rtxmod.rendering.pipeline;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.config.RTXConfig;
+import com.rtxmod.rendering.buffers.GBufferLayout;
 import com.rtxmod.rendering.buffers.RTXFrameBuffer;
+import com.rtxmod.rendering.profiling.GPUProfiler;
+import com.rtxmod.rendering.profiling.RenderPhase;
 import com.rtxmod.rendering.scene.SceneManager;
 import com.rtxmod.rendering.shaders.RTXShaderManager;
 import com.rtxmod.rendering.shaders.RTXShaderProgram;
-
-import net.minecraft.util.math.Matrix4f;
+import com.rtxmod.rendering.shaders.ShaderUniform;
+import com.rtxmod.util.GLBackend;
+import org.joml.Matrix4fc;
+import org.joml.Vector2f;
 import org.lwjgl.opengl.GL46;
 
 /**
@@ -14,15 +20,42 @@ import org.lwjgl.opengl.GL46;
  */
 public class RayTracingPipeline {
     
+    private final GLBackend gl = GLBackend.get();
     private final RTXShaderManager shaderManager;
     private final SceneManager sceneManager;
+    private final RTXConfig config;
+    private final GPUProfiler profiler;
     
     private boolean initialized = false;
     private int frameCounter = 0;
+    private int outputWidth = 0;
+    
+    // Sub-pixel offset of this frame's primary rays, in pixels of the traced frame buffer
+    private final Vector2f jitter = new Vector2f();
+    
+    // Uniform handles of the current ray tracing program, re-resolved when a reload swaps it
+    private RTXShaderProgram resolvedProgram;
+    private ShaderUniform viewMatrixUniform;
+    private ShaderUniform projectionMatrixUniform;
+    private ShaderUniform timeUniform;
+    private ShaderUniform frameUniform;
+    private ShaderUniform tickDeltaUniform;
+    private ShaderUniform jitterUniform;
+    private ShaderUniform maxDistanceUniform;
+    private ShaderUniform shadowSamplesUniform;
+    private ShaderUniform screenWidthUniform;
+    private ShaderUniform screenHeightUniform;
+    private ShaderUniform outputImage;
+    private ShaderUniform normalImage;
+    private ShaderUniform materialImage;
+    private ShaderUniform motionImage;
     
-    public RayTracingPipeline(RTXShaderManager shaderManager, SceneManager sceneManager) {
+    public RayTracingPipeline(RTXShaderManager shaderManager, SceneManager sceneManager, RTXConfig config,
+                              GPUProfiler profiler) {
         this.shaderManager = shaderManager;
         this.sceneManager = sceneManager;
+        this.config = config;
+        this.profiler = profiler;
     }
     
     public void initialize() {
@@ -35,17 +68,18 @@ public class RayTracingPipeline {
             
             initialized = true;
             RTXMod.LOGGER.info("Ray Tracing Pipeline initialization complete!");
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to initialize Ray Tracing Pipeline: ", e);
             initialized = false;
         }
     }
     
-    public void render(Matrix4f viewMatrix, Matrix4f projectionMatrix, RTXFrameBuffer frameBuffer, float tickDelta) {
+    public void render(Matrix4fc viewMatrix, Matrix4fc projectionMatrix, RTXFrameBuffer frameBuffer, float tickDelta) {
         if (!initialized) return;
         
         frameCounter++;
+        updateJitter(frameBuffer.getWidth());
         
         // Get the ray tracing compute shader
         RTXShaderProgram rayTracingShader = shaderManager.getShaderProgram(RTXShaderManager.RAY_TRACING_PROGRAM);
@@ -54,42 +88,93 @@ public class RayTracingPipeline {
             return;
         }
         
+        if (rayTracingShader != resolvedProgram) {
+            resolveUniforms(rayTracingShader);
+        }
+        
         // Bind the shader and set uniforms
+        profiler.begin(RenderPhase.RAY_TRACE);
         rayTracingShader.bind();
         
         // Set camera matrices
-        rayTracingShader.setUniform("uViewMatrix", viewMatrix);
-        rayTracingShader.setUniform("uProjectionMatrix", projectionMatrix);
+        viewMatrixUniform.set(viewMatrix);
+        projectionMatrixUniform.set(projectionMatrix);
         
         // Set rendering parameters
-        rayTracingShader.setUniform("uTime", (float) (System.currentTimeMillis() % 1000000) / 1000.0f);
-        rayTracingShader.setUniform("uFrame", frameCounter);
-        rayTracingShader.setUniform("uTickDelta", tickDelta);
+        timeUniform.set((float) (System.currentTimeMillis() % 1000000) / 1000.0f);
+        frameUniform.set(frameCounter);
+        tickDeltaUniform.set(tickDelta);
+        jitterUniform.set(jitter);
+        maxDistanceUniform.set(config.getRayTracingDistance());
+        shadowSamplesUniform.set(config.getShadowSamples());
         
-        // Set screen dimensions
-        rayTracingShader.setUniform("uScreenWidth", frameBuffer.getWidth());
-        rayTracingShader.setUniform("uScreenHeight", frameBuffer.getHeight());
+        // Set screen dimensions, unchanged between resizes so these skip the upload
+        screenWidthUniform.set(frameBuffer.getWidth());
+        screenHeightUniform.set(frameBuffer.getHeight());
         
         // Bind output images
-        rayTracingShader.bindImage("img_output", frameBuffer.getColorTextureId(), 0, GL46.GL_WRITE_ONLY, GL46.GL_RGBA16F);
-        rayTracingShader.bindImage("img_normal", frameBuffer.getNormalTextureId(), 1, GL46.GL_WRITE_ONLY, GL46.GL_RGB16F);
-        rayTracingShader.bindImage("img_material", frameBuffer.getMaterialTextureId(), 2, GL46.GL_WRITE_ONLY, GL46.GL_RGBA8);
-        rayTracingShader.bindImage("img_motion", frameBuffer.getMotionVectorTextureId(), 3, GL46.GL_WRITE_ONLY, GL46.GL_RG16F);
-        
-        // Dispatch the compute shader
-        int workGroupsX = (frameBuffer.getWidth() + 15) / 16;   // 16x16 local work group size
-        int workGroupsY = (frameBuffer.getHeight() + 15) / 16;
+        GBufferLayout layout = frameBuffer.getLayout();
+        rayTracingShader.bindImage(outputImage, frameBuffer.getColorTextureId(), 0, GL46.GL_WRITE_ONLY, frameBuffer.getColorFormat());
+        rayTracingShader.bindImage(normalImage, frameBuffer.getNormalTextureId(), 1, GL46.GL_WRITE_ONLY, layout.getNormalFormat());
+        rayTracingShader.bindImage(materialImage, frameBuffer.getMaterialTextureId(), 2, GL46.GL_WRITE_ONLY, layout.getMaterialFormat());
+        rayTracingShader.bindImage(motionImage, frameBuffer.getMotionVectorTextureId(), 3, GL46.GL_WRITE_ONLY, GBufferLayout.MOTION_VECTOR_FORMAT);
         
-        GL46.glDispatchCompute(workGroupsX, workGroupsY, 1);
+        // Dispatch the compute shader at its tuned local size
+        shaderManager.dispatch2D(rayTracingShader, frameBuffer.getWidth(), frameBuffer.getHeight());
         
         // Ensure all writes are complete before continuing
-        GL46.glMemoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
+        gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT | GL46.GL_TEXTURE_FETCH_BARRIER_BIT);
         
-        rayTracingShader.unbind();
+        profiler.end(RenderPhase.RAY_TRACE);
     }
     
+    private void resolveUniforms(RTXShaderProgram program) {
+        viewMatrixUniform = program.getUniform("uViewMatrix");
+        projectionMatrixUniform = program.getUniform("uProjectionMatrix");
+        timeUniform = program.getUniform("uTime");
+        frameUniform = program.getUniform("uFrame");
+        tickDeltaUniform = program.getUniform("uTickDelta");
+        jitterUniform = program.getUniform("uJitter");
+        maxDistanceUniform = program.getUniform("uMaxDistance");
+        shadowSamplesUniform = program.getUniform("uShadowSamples");
+        screenWidthUniform = program.getUniform("uScreenWidth");
+        screenHeightUniform = program.getUniform("uScreenHeight");
+        outputImage = program.getUniform("img_output");
+        normalImage = program.getUniform("img_normal");
+        materialImage = program.getUniform("img_material");
+        motionImage = program.getUniform("img_motion");
+        resolvedProgram = program;
+    }
+    
+    private void updateJitter(int tracedWidth) {
+        if (!config.isTemporalUpsamplingEnabled()) {
+            jitter.set(0.0f, 0.0f);
+            return;
+        }
+        
+        // Enough Halton phases that every output pixel is covered by a sample within one cycle
+        // Measured from the targets, the renderer may run below the configured scale under memory pressure
+        float upscaleFactor = Math.max(1.0f, (float) outputWidth / Math.max(1, tracedWidth));
+        int phaseCount = Math.max(8, (int) Math.ceil(8.0f * upscaleFactor * upscaleFactor));
+        int index = (frameCounter % phaseCount) + 1;
+        
+        jitter.set(halton(index, 2) - 0.5f, halton(index, 3) - 0.5f);
+    }
+    
+    private static float halton(int index, int base) {
+        float result = 0.0f;
+        float fraction = 1.0f;
+        while (index > 0) {
+            fraction /= base;
+            result += fraction * (index % base);
+            index /= base;
+        }
+        return result;
+    }
+    
+    // Called with the output size, the traced size comes with each frame buffer
     public void onResize(int width, int height) {
-        // Handle pipeline resize if needed
+        outputWidth = width;
         RTXMod.LOGGER.debug("Ray tracing pipeline resize: {}x{}", width, height);
     }
     
@@ -99,6 +184,7 @@ public class RayTracingPipeline {
         RTXMod.LOGGER.info("Cleaning up Ray Tracing Pipeline...");
         
         // Cleanup pipeline-specific resources
+        resolvedProgram = null;
         
         initialized = false;
         RTXMod.LOGGER.info("Ray Tracing Pipeline cleanup complete");
@@ -111,4 +197,8 @@ public class RayTracingPipeline {
     public int getFrameCounter() {
         return frameCounter;
     }
+    
+    public Vector2f getJitter() {
+        return jitter;
+    }
 }
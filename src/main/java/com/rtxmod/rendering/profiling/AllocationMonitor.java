@@ -0,0 +1,97 @@
+package com.rtxmod.rendering.profiling;
+
+import com.rtxmod.RTXMod;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Warns when steady-state frames allocate on the heap, enabled with -Drtxmod.checkAllocations=true
+ * Reads the JVM's per-thread allocation counter; debug logging and JFR recordings allocate, so check with both off
+ */
+public class AllocationMonitor {
+    
+    public static final String PROPERTY = "rtxmod.checkAllocations";
+    
+    // Class loading, JIT warm-up and the first shader builds allocate, so early frames don't count
+    private static final int WARMUP_FRAMES = 600;
+    private static final int REPORT_INTERVAL_FRAMES = 600;
+    
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final boolean enabled;
+    
+    private long frameStartBytes = 0;
+    private boolean frameStarted = false;
+    private int frameCount = 0;
+    
+    // Current report window
+    private int allocatingFrames = 0;
+    private long allocatedBytes = 0;
+    private long maxFrameBytes = 0;
+    private boolean warned = false;
+    
+    public AllocationMonitor() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        boolean supported = bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+        
+        this.threadBean = supported ? (com.sun.management.ThreadMXBean) bean : null;
+        this.enabled = supported && Boolean.getBoolean(PROPERTY);
+        if (enabled) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+            RTXMod.LOGGER.info("Checking RTX frames for heap allocations after {} warm-up frames", WARMUP_FRAMES);
+        } else if (Boolean.getBoolean(PROPERTY)) {
+            RTXMod.LOGGER.warn("{} is set but this JVM can't count per-thread allocations", PROPERTY);
+        }
+    }
+    
+    public void beginFrame() {
+        if (!enabled) return;
+        
+        frameStartBytes = threadBean.getCurrentThreadAllocatedBytes();
+        frameStarted = true;
+    }
+    
+    /**
+     * Settling frames (shader builds, resizes, tuning runs) are expected to allocate and are not checked
+     */
+    public void endFrame(boolean settling) {
+        if (!enabled || !frameStarted) return;
+        
+        // Measured before anything below can allocate
+        long bytes = threadBean.getCurrentThreadAllocatedBytes() - frameStartBytes;
+        frameStarted = false;
+        frameCount++;
+        if (frameCount <= WARMUP_FRAMES || settling) return;
+        
+        if (bytes > 0) {
+            allocatingFrames++;
+            allocatedBytes += bytes;
+            maxFrameBytes = Math.max(maxFrameBytes, bytes);
+            
+            if (!warned) {
+                warned = true;
+                RTXMod.LOGGER.warn("Steady-state RTX frame {} allocated {} bytes", frameCount, bytes);
+            }
+        }
+        
+        if (frameCount % REPORT_INTERVAL_FRAMES == 0) {
+            if (allocatingFrames > 0) {
+                RTXMod.LOGGER.warn("{} of the last {} RTX frames allocated, {} bytes in total, at most {} in one frame",
+                    allocatingFrames, REPORT_INTERVAL_FRAMES, allocatedBytes, maxFrameBytes);
+            }
+            allocatingFrames = 0;
+            allocatedBytes = 0;
+            maxFrameBytes = 0;
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Frames since warm-up that allocated, within the current report window
+    public int getAllocatingFrames() {
+        return allocatingFrames;
+    }
+}
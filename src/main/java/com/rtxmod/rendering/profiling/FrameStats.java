@@ -0,0 +1,244 @@
+package com.rtxmod.rendering.profiling;
+
+import com.rtxmod.RTXMod;
+
+import java.util.Arrays;
+
+/**
+ * Frame time distributions for the CPU and GPU side of each phase, reported as percentiles
+ * Frames far above the running median are attributed to the phase that grew the most
+ */
+public class FrameStats {
+    
+    private static final RenderPhase[] PHASES = RenderPhase.values();
+    
+    // Windows restart after each report, so percentiles describe the last few seconds
+    private static final int REPORT_INTERVAL_FRAMES = 600;
+    private static final int BASELINE_INTERVAL_FRAMES = 60;
+    
+    // A spike is a frame this many times the median and at least this much slower
+    private static final double SPIKE_FACTOR = 2.0;
+    private static final double MIN_SPIKE_EXCESS_MS = 4.0;
+    
+    // 0.01 ms to ~10 s and 1 KB to ~16 GB
+    private static final double MIN_TIME_MS = 0.01;
+    private static final int TIME_OCTAVES = 20;
+    private static final double MIN_UPLOAD_BYTES = 1024.0;
+    private static final int UPLOAD_OCTAVES = 24;
+    
+    public enum Side {
+        CPU,
+        GPU
+    }
+    
+    /**
+     * A frame that exceeded the spike threshold, phase is null when no timed phase accounts for it
+     * One instance is reused for every spike so recording one doesn't allocate
+     */
+    public static final class Spike {
+        private long frameIndex;
+        private Side side;
+        private float frameTimeMs;
+        private float medianMs;
+        private RenderPhase phase;
+        private float phaseExcessMs;
+        
+        void set(long frameIndex, Side side, float frameTimeMs, float medianMs, RenderPhase phase, float phaseExcessMs) {
+            this.frameIndex = frameIndex;
+            this.side = side;
+            this.frameTimeMs = frameTimeMs;
+            this.medianMs = medianMs;
+            this.phase = phase;
+            this.phaseExcessMs = phaseExcessMs;
+        }
+        
+        public long getFrameIndex() { return frameIndex; }
+        public Side getSide() { return side; }
+        public float getFrameTimeMs() { return frameTimeMs; }
+        public float getMedianMs() { return medianMs; }
+        public RenderPhase getPhase() { return phase; }
+        public float getPhaseExcessMs() { return phaseExcessMs; }
+    }
+    
+    private final LogHistogram cpuFrame = new LogHistogram(MIN_TIME_MS, TIME_OCTAVES);
+    private final LogHistogram gpuFrame = new LogHistogram(MIN_TIME_MS, TIME_OCTAVES);
+    private final LogHistogram[] cpuPhases = new LogHistogram[PHASES.length];
+    private final LogHistogram[] gpuPhases = new LogHistogram[PHASES.length];
+    private final LogHistogram uploadBytes = new LogHistogram(MIN_UPLOAD_BYTES, UPLOAD_OCTAVES);
+    
+    // Medians the spike check compares against, refreshed from the current window
+    private double cpuMedianMs = 0.0;
+    private double gpuMedianMs = 0.0;
+    private final double[] cpuPhaseMediansMs = new double[PHASES.length];
+    private final double[] gpuPhaseMediansMs = new double[PHASES.length];
+    
+    // Spikes of the current window per phase, the last slot counts unattributed ones
+    private final int[] spikeCounts = new int[PHASES.length + 1];
+    private final Spike spike = new Spike();
+    private Spike lastSpike = null;
+    
+    private final float[] phaseTimesMs = new float[PHASES.length];
+    private long frameIndex = 0;
+    private long lastGpuFrameIndex = -1;
+    
+    // Summary of the last finished window
+    private float reportedCpuMedianMs = 0.0f;
+    private float reportedCpuP99Ms = 0.0f;
+    private float reportedGpuMedianMs = 0.0f;
+    private float reportedGpuP99Ms = 0.0f;
+    
+    public FrameStats() {
+        for (int i = 0; i < PHASES.length; i++) {
+            cpuPhases[i] = new LogHistogram(MIN_TIME_MS, TIME_OCTAVES);
+            gpuPhases[i] = new LogHistogram(MIN_TIME_MS, TIME_OCTAVES);
+        }
+    }
+    
+    /**
+     * Call once per frame after the profiler's endFrame; GPU results are taken whenever a new frame resolved
+     */
+    public void recordFrame(float cpuFrameMs, GPUProfiler profiler, long frameUploadBytes) {
+        cpuFrame.record(cpuFrameMs);
+        for (RenderPhase phase : PHASES) {
+            phaseTimesMs[phase.ordinal()] = profiler.getPhaseCpuTimeMs(phase);
+            cpuPhases[phase.ordinal()].record(phaseTimesMs[phase.ordinal()]);
+        }
+        checkSpike(frameIndex, Side.CPU, cpuFrameMs, cpuMedianMs, cpuPhaseMediansMs);
+        uploadBytes.record(frameUploadBytes);
+        
+        // GPU results lag a few frames behind and skip frames the GPU was late on
+        long gpuFrameIndex = profiler.getResolvedFrameIndex();
+        if (gpuFrameIndex != lastGpuFrameIndex && gpuFrameIndex >= 0) {
+            lastGpuFrameIndex = gpuFrameIndex;
+            gpuFrame.record(profiler.getFrameTimeMs());
+            for (RenderPhase phase : PHASES) {
+                phaseTimesMs[phase.ordinal()] = profiler.getPhaseTimeMs(phase);
+                gpuPhases[phase.ordinal()].record(phaseTimesMs[phase.ordinal()]);
+            }
+            checkSpike(gpuFrameIndex, Side.GPU, profiler.getFrameTimeMs(), gpuMedianMs, gpuPhaseMediansMs);
+        }
+        
+        frameIndex++;
+        if (frameIndex % BASELINE_INTERVAL_FRAMES == 0) {
+            updateMedians();
+        }
+        if (frameIndex % REPORT_INTERVAL_FRAMES == 0) {
+            report();
+            reset();
+        }
+    }
+    
+    // phaseTimesMs holds the frame's phase times for the given side
+    private void checkSpike(long spikeFrame, Side side, float frameMs, double medianMs, double[] phaseMediansMs) {
+        if (medianMs <= 0.0 || frameMs < medianMs * SPIKE_FACTOR || frameMs - medianMs < MIN_SPIKE_EXCESS_MS) {
+            return;
+        }
+        
+        RenderPhase cause = null;
+        double causeExcess = 0.0;
+        for (RenderPhase phase : PHASES) {
+            double excess = phaseTimesMs[phase.ordinal()] - phaseMediansMs[phase.ordinal()];
+            if (excess > causeExcess) {
+                cause = phase;
+                causeExcess = excess;
+            }
+        }
+        
+        // A phase that explains less than half the jump didn't cause it, the time went somewhere untimed
+        if (causeExcess < (frameMs - medianMs) * 0.5) {
+            cause = null;
+        }
+        
+        spikeCounts[cause != null ? cause.ordinal() : PHASES.length]++;
+        spike.set(spikeFrame, side, frameMs, (float) medianMs, cause, (float) causeExcess);
+        lastSpike = spike;
+        if (!RTXMod.LOGGER.isDebugEnabled()) return;
+        
+        RTXMod.LOGGER.debug("RTX {} spike in frame {}: {} ms (median {} ms), {}", side, spikeFrame,
+            String.format("%.2f", frameMs), String.format("%.2f", medianMs),
+            cause != null ? cause.getDisplayName() + " +" + String.format("%.2f", causeExcess) + " ms" : "outside timed phases");
+    }
+    
+    private void updateMedians() {
+        if (cpuFrame.getCount() >= BASELINE_INTERVAL_FRAMES) {
+            cpuMedianMs = cpuFrame.getPercentile(50);
+            for (int i = 0; i < PHASES.length; i++) {
+                cpuPhaseMediansMs[i] = cpuPhases[i].getPercentile(50);
+            }
+        }
+        if (gpuFrame.getCount() >= BASELINE_INTERVAL_FRAMES / 2) {
+            gpuMedianMs = gpuFrame.getPercentile(50);
+            for (int i = 0; i < PHASES.length; i++) {
+                gpuPhaseMediansMs[i] = gpuPhases[i].getPercentile(50);
+            }
+        }
+    }
+    
+    private void report() {
+        reportedCpuMedianMs = (float) cpuFrame.getPercentile(50);
+        reportedCpuP99Ms = (float) cpuFrame.getPercentile(99);
+        reportedGpuMedianMs = (float) gpuFrame.getPercentile(50);
+        reportedGpuP99Ms = (float) gpuFrame.getPercentile(99);
+        
+        if (!RTXMod.LOGGER.isDebugEnabled()) return;
+        
+        RTXMod.LOGGER.debug("RTX frame times over {} frames: CPU {} | GPU {} | uploads p50 {} KB, max {} KB | spikes: {}",
+            cpuFrame.getCount(), describe(cpuFrame), describe(gpuFrame),
+            Math.round(uploadBytes.getPercentile(50) / 1024.0), Math.round(uploadBytes.getMax() / 1024.0), describeSpikes());
+        for (RenderPhase phase : PHASES) {
+            LogHistogram cpu = cpuPhases[phase.ordinal()];
+            LogHistogram gpu = gpuPhases[phase.ordinal()];
+            if (cpu.getMax() <= 0.0 && gpu.getMax() <= 0.0) continue;
+            
+            RTXMod.LOGGER.debug("  {}: CPU {} | GPU {}", phase.getDisplayName(), describe(cpu), describe(gpu));
+        }
+    }
+    
+    private static String describe(LogHistogram histogram) {
+        return String.format("p50 %.2f, p95 %.2f, p99 %.2f, max %.2f ms",
+            histogram.getPercentile(50), histogram.getPercentile(95), histogram.getPercentile(99), histogram.getMax());
+    }
+    
+    private String describeSpikes() {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < spikeCounts.length; i++) {
+            if (spikeCounts[i] == 0) continue;
+            
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(i < PHASES.length ? PHASES[i].getDisplayName() : "other").append(' ').append(spikeCounts[i]);
+        }
+        return summary.length() > 0 ? summary.toString() : "none";
+    }
+    
+    // Medians carry over, the next window is checked against them until it has its own
+    private void reset() {
+        cpuFrame.reset();
+        gpuFrame.reset();
+        for (int i = 0; i < PHASES.length; i++) {
+            cpuPhases[i].reset();
+            gpuPhases[i].reset();
+        }
+        uploadBytes.reset();
+        Arrays.fill(spikeCounts, 0);
+    }
+    
+    // Median and p99 of the last finished window, 0 before the first report
+    public float getCpuMedianMs() { return reportedCpuMedianMs; }
+    public float getCpuP99Ms() { return reportedCpuP99Ms; }
+    public float getGpuMedianMs() { return reportedGpuMedianMs; }
+    public float getGpuP99Ms() { return reportedGpuP99Ms; }
+    
+    // Live distributions of the current window
+    public LogHistogram getCpuFrameHistogram() { return cpuFrame; }
+    public LogHistogram getGpuFrameHistogram() { return gpuFrame; }
+    public LogHistogram getCpuPhaseHistogram(RenderPhase phase) { return cpuPhases[phase.ordinal()]; }
+    public LogHistogram getGpuPhaseHistogram(RenderPhase phase) { return gpuPhases[phase.ordinal()]; }
+    public LogHistogram getUploadHistogram() { return uploadBytes; }
+    
+    // Overwritten by the next spike, copy what should be kept
+    public Spike getLastSpike() {
+        return lastSpike;
+    }
+}
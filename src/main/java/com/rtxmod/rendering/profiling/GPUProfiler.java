@@ -0,0 +1,213 @@
+package com.rtxmod.rendering.profiling;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.profiling.events.RenderPhaseEvent;
+import com.rtxmod.util.GLBackend;
+import jdk.jfr.EventType;
+import org.lwjgl.opengl.GL46;
+
+import java.util.Arrays;
+
+/**
+ * GPU time of each render phase from timestamp queries, plus the CPU time spent submitting it
+ * Frames rotate through a ring of query sets and are read back several frames later, so nothing waits on the GPU
+ */
+public class GPUProfiler {
+    
+    // Frames the GPU may lag behind before a frame's results are dropped instead of waited for
+    private static final int FRAMES_IN_FLIGHT = 4;
+    
+    // Timed scopes per frame, post-processing alone opens up to three
+    private static final int MAX_SCOPES = 32;
+    
+    private static final RenderPhase[] PHASES = RenderPhase.values();
+    
+    // Checked before creating phase events, so frames allocate nothing while no recording wants them
+    private static final EventType PHASE_EVENT_TYPE = EventType.getEventType(RenderPhaseEvent.class);
+    
+    private static final class FrameQueries {
+        // Frame begin and end, then a begin/end pair per scope
+        final int[] queries = new int[2 + MAX_SCOPES * 2];
+        final RenderPhase[] scopePhases = new RenderPhase[MAX_SCOPES];
+        int scopeCount = 0;
+        long frameIndex = 0;
+        boolean pending = false;
+    }
+    
+    private final GLBackend gl = GLBackend.get();
+    private final FrameQueries[] ring = new FrameQueries[FRAMES_IN_FLIGHT];
+    private final int[] openScopes = new int[PHASES.length];
+    private final long[] cpuPhaseStarts = new long[PHASES.length];
+    private final long[] cpuPhaseNanos = new long[PHASES.length];
+    private final RenderPhaseEvent[] phaseEvents = new RenderPhaseEvent[PHASES.length];
+    private FrameQueries current = null;
+    private long frameIndex = 0;
+    private boolean initialized = false;
+    
+    // Latest resolved frame
+    private final float[] phaseTimesMs = new float[PHASES.length];
+    private float frameTimeMs = 0.0f;
+    private long resolvedFrameIndex = -1;
+    private int droppedFrames = 0;
+    
+    public void initialize() {
+        if (initialized) return;
+        
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new FrameQueries();
+            gl.genQueries(ring[i].queries);
+        }
+        initialized = true;
+    }
+    
+    public void beginFrame() {
+        if (!initialized) return;
+        
+        FrameQueries frame = ring[(int) (frameIndex % FRAMES_IN_FLIGHT)];
+        if (frame.pending) {
+            resolve(frame);
+        }
+        
+        frame.scopeCount = 0;
+        frame.frameIndex = frameIndex++;
+        Arrays.fill(openScopes, -1);
+        Arrays.fill(cpuPhaseStarts, 0);
+        Arrays.fill(cpuPhaseNanos, 0);
+        gl.queryCounter(frame.queries[0], GL46.GL_TIMESTAMP);
+        current = frame;
+    }
+    
+    public void begin(RenderPhase phase) {
+        if (current == null || cpuPhaseStarts[phase.ordinal()] != 0) return;
+        
+        cpuPhaseStarts[phase.ordinal()] = System.nanoTime();
+        if (PHASE_EVENT_TYPE.isEnabled()) {
+            RenderPhaseEvent event = new RenderPhaseEvent();
+            event.phase = phase.getDisplayName();
+            event.frameIndex = current.frameIndex;
+            event.begin();
+            phaseEvents[phase.ordinal()] = event;
+        }
+        if (current.scopeCount == MAX_SCOPES) return;
+        
+        int scope = current.scopeCount++;
+        current.scopePhases[scope] = phase;
+        openScopes[phase.ordinal()] = scope;
+        gl.queryCounter(current.queries[2 + scope * 2], GL46.GL_TIMESTAMP);
+    }
+    
+    public void end(RenderPhase phase) {
+        if (current == null || cpuPhaseStarts[phase.ordinal()] == 0) return;
+        
+        cpuPhaseNanos[phase.ordinal()] += System.nanoTime() - cpuPhaseStarts[phase.ordinal()];
+        cpuPhaseStarts[phase.ordinal()] = 0;
+        
+        RenderPhaseEvent event = phaseEvents[phase.ordinal()];
+        if (event != null) {
+            event.commit();
+            phaseEvents[phase.ordinal()] = null;
+        }
+        
+        int scope = openScopes[phase.ordinal()];
+        if (scope < 0) return;
+        
+        gl.queryCounter(current.queries[3 + scope * 2], GL46.GL_TIMESTAMP);
+        openScopes[phase.ordinal()] = -1;
+    }
+    
+    // Also called when a frame is aborted, scopes left open are closed here
+    public void endFrame() {
+        if (current == null) return;
+        
+        for (RenderPhase phase : PHASES) {
+            end(phase);
+        }
+        gl.queryCounter(current.queries[1], GL46.GL_TIMESTAMP);
+        current.pending = true;
+        current = null;
+    }
+    
+    private void resolve(FrameQueries frame) {
+        frame.pending = false;
+        
+        // The frame end was issued last, once it is available every query of the frame is
+        if (gl.getQueryObjecti(frame.queries[1], GL46.GL_QUERY_RESULT_AVAILABLE) == GL46.GL_FALSE) {
+            droppedFrames++;
+            return;
+        }
+        
+        // Phases entered several times per frame report their sum
+        Arrays.fill(phaseTimesMs, 0.0f);
+        for (int scope = 0; scope < frame.scopeCount; scope++) {
+            phaseTimesMs[frame.scopePhases[scope].ordinal()] +=
+                elapsedMs(frame.queries[2 + scope * 2], frame.queries[3 + scope * 2]);
+        }
+        frameTimeMs = elapsedMs(frame.queries[0], frame.queries[1]);
+        resolvedFrameIndex = frame.frameIndex;
+    }
+    
+    private float elapsedMs(int beginQuery, int endQuery) {
+        long begin = gl.getQueryObjectui64(beginQuery, GL46.GL_QUERY_RESULT);
+        long end = gl.getQueryObjectui64(endQuery, GL46.GL_QUERY_RESULT);
+        return (end - begin) / 1_000_000.0f;
+    }
+    
+    public void cleanup() {
+        if (!initialized) return;
+        
+        for (FrameQueries frame : ring) {
+            gl.deleteQueries(frame.queries);
+        }
+        Arrays.fill(ring, null);
+        current = null;
+        initialized = false;
+        
+        if (droppedFrames > 0) {
+            RTXMod.LOGGER.debug("GPU profiler dropped {} frames the GPU was too far behind on", droppedFrames);
+        }
+    }
+    
+    // GPU time of a phase in the latest resolved frame, lagging the current frame by a few frames
+    public float getPhaseTimeMs(RenderPhase phase) {
+        return phaseTimesMs[phase.ordinal()];
+    }
+    
+    // CPU time of a phase in the frame that ended last, known right away
+    public float getPhaseCpuTimeMs(RenderPhase phase) {
+        return cpuPhaseNanos[phase.ordinal()] / 1_000_000.0f;
+    }
+    
+    // GPU time from the first to the last command of the latest resolved frame
+    public float getFrameTimeMs() {
+        return frameTimeMs;
+    }
+    
+    // Index of the frame being recorded, or of the last one between frames
+    public long getFrameIndex() {
+        return frameIndex - 1;
+    }
+    
+    // -1 until the first frame resolves
+    public long getResolvedFrameIndex() {
+        return resolvedFrameIndex;
+    }
+    
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+    
+    // Phases with any GPU time, e.g. "trace 3.10, denoise 1.24"
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (RenderPhase phase : PHASES) {
+            float timeMs = phaseTimesMs[phase.ordinal()];
+            if (timeMs <= 0.0f) continue;
+            
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(phase.getDisplayName()).append(' ').append(String.format("%.2f", timeMs));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.rtxmod.rendering.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram with logarithmic buckets, about 9% relative error at any magnitude
+ * Recording never allocates, so it can sit on the frame path
+ */
+public class LogHistogram {
+    
+    private static final int BUCKETS_PER_OCTAVE = 8;
+    private static final double INV_LN2 = 1.0 / Math.log(2.0);
+    
+    private final double minValue;
+    
+    // Bucket 0 holds everything below minValue, bucket i ends at minValue * 2^(i / BUCKETS_PER_OCTAVE)
+    private final long[] counts;
+    private long totalCount = 0;
+    private double maxValue = 0.0;
+    
+    public LogHistogram(double minValue, int octaves) {
+        this.minValue = minValue;
+        this.counts = new long[octaves * BUCKETS_PER_OCTAVE + 1];
+    }
+    
+    public void record(double value) {
+        int bucket = 0;
+        if (value >= minValue) {
+            bucket = Math.min(counts.length - 1, 1 + (int) (Math.log(value / minValue) * INV_LN2 * BUCKETS_PER_OCTAVE));
+        }
+        counts[bucket]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, value);
+    }
+    
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), never above the exact maximum
+     */
+    public double getPercentile(double percentile) {
+        if (totalCount == 0) return 0.0;
+        
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(minValue * Math.pow(2.0, (double) bucket / BUCKETS_PER_OCTAVE), maxValue);
+            }
+        }
+        return maxValue;
+    }
+    
+    public double getMax() {
+        return maxValue;
+    }
+    
+    public long getCount() {
+        return totalCount;
+    }
+    
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0.0;
+    }
+}
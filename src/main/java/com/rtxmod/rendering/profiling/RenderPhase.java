@@ -0,0 +1,24 @@
+package com.rtxmod.rendering.profiling;
+
+/**
+ * Phases of an RTX frame, in submission order
+ */
+public enum RenderPhase {
+    RESIZE("resize"),
+    SCENE_UPDATE("scene"),
+    RAY_TRACE("trace"),
+    DENOISE("denoise"),
+    AUTO_EXPOSURE("exposure"),
+    POST_PROCESS("post"),
+    UPSCALE("upscale");
+    
+    private final String displayName;
+    
+    RenderPhase(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,20 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A setting change, spanning every listener's reaction to it
+ */
+@Name("rtxmod.ConfigChange")
+@Label("Config Change")
+@Category({"RTX Mod", "Config"})
+public class ConfigChangeEvent extends RTXEvent {
+    
+    @Label("Setting")
+    public String setting;
+    
+    @Label("Impact")
+    public String impact;
+}
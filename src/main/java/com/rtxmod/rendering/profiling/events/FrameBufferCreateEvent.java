@@ -0,0 +1,26 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rtxmod.FrameBufferCreate")
+@Label("Frame Buffer Create")
+@Category({"RTX Mod", "Resources"})
+public class FrameBufferCreateEvent extends RTXEvent {
+    
+    @Label("Width")
+    public int width;
+    
+    @Label("Height")
+    public int height;
+    
+    @Label("HDR")
+    public boolean hdr;
+    
+    @Label("Layout")
+    public String layout;
+    
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,20 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rtxmod.FrameBufferDelete")
+@Label("Frame Buffer Delete")
+@Category({"RTX Mod", "Resources"})
+public class FrameBufferDeleteEvent extends RTXEvent {
+    
+    @Label("Width")
+    public int width;
+    
+    @Label("Height")
+    public int height;
+    
+    @Label("Layout")
+    public String layout;
+}
@@ -0,0 +1,12 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Event;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the mod's Flight Recorder events, recorded without stack traces to keep them cheap
+ * Per-frame call sites check the event type first, so nothing is allocated while recording is off
+ */
+@StackTrace(false)
+public abstract class RTXEvent extends Event {
+}
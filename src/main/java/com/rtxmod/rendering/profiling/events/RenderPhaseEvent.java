@@ -0,0 +1,22 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * CPU-side span of one render phase, recorded by GPUProfiler alongside its GPU timestamps
+ */
+@Name("rtxmod.RenderPhase")
+@Label("Render Phase")
+@Category({"RTX Mod", "Rendering"})
+@Description("Time the render thread spent submitting one phase of an RTX frame")
+public class RenderPhaseEvent extends RTXEvent {
+    
+    @Label("Phase")
+    public String phase;
+    
+    @Label("Frame")
+    public long frameIndex;
+}
@@ -0,0 +1,22 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rtxmod.SceneUpdate")
+@Label("Scene Update")
+@Category({"RTX Mod", "Scene"})
+public class SceneUpdateEvent extends RTXEvent {
+    
+    @Label("Frame")
+    public long frameIndex;
+    
+    @Label("Uploads")
+    public int uploadCount;
+    
+    @Label("Uploaded")
+    @DataAmount
+    public long uploadBytes;
+}
@@ -0,0 +1,19 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rtxmod.SceneUpload")
+@Label("Scene Upload")
+@Category({"RTX Mod", "Scene"})
+public class SceneUploadEvent extends RTXEvent {
+    
+    @Label("Frame")
+    public long frameIndex;
+    
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,31 @@
+package com.rtxmod.rendering.profiling.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One program from submission to link, which spans several frames when the driver compiles in parallel
+ */
+@Name("rtxmod.ShaderCompile")
+@Label("Shader Compile")
+@Category({"RTX Mod", "Shaders"})
+@Description("Build of one shader program permutation, from the binary cache or the compiler")
+public class ShaderCompileEvent extends RTXEvent {
+    
+    @Label("Program")
+    public String program;
+    
+    @Label("Defines")
+    public String defines;
+    
+    @Label("From Binary Cache")
+    public boolean fromBinaryCache;
+    
+    @Label("Parallel Compile")
+    public boolean parallel;
+    
+    @Label("Succeeded")
+    public boolean succeeded;
+}
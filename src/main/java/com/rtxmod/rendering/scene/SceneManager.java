@@ -1,6 +1,9 @@
 package com.rtxmod.rendering.scene;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.profiling.events.SceneUpdateEvent;
+import com.rtxmod.rendering.profiling.events.SceneUploadEvent;
+import jdk.jfr.EventType;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.util.math.BlockPos;
@@ -11,8 +14,17 @@ import net.minecraft.world.World;
  */
 public class SceneManager {
     
+    // Checked first so updates allocate no events while no recording wants them
+    private static final EventType UPDATE_EVENT_TYPE = EventType.getEventType(SceneUpdateEvent.class);
+    private static final EventType UPLOAD_EVENT_TYPE = EventType.getEventType(SceneUploadEvent.class);
+    
     private boolean initialized = false;
     
+    // Bytes sent to the GPU during the current frame's update
+    private long frameUploadBytes = 0;
+    private int frameUploadCount = 0;
+    private long frameIndex = 0;
+    
     public void initialize() {
         if (initialized) return;
         
@@ -23,26 +35,60 @@ public class SceneManager {
             
             initialized = true;
             RTXMod.LOGGER.info("Scene Manager initialization complete!");
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to initialize Scene Manager: ", e);
             initialized = false;
         }
     }
     
-    public void update(float tickDelta) {
+    public void update(float tickDelta, long frameIndex) {
         if (!initialized) return;
         
+        this.frameIndex = frameIndex;
+        frameUploadBytes = 0;
+        frameUploadCount = 0;
+        
+        // No client outside the game, e.g. when frames are driven by tests
         MinecraftClient client = MinecraftClient.getInstance();
-        ClientWorld world = client.world;
+        ClientWorld world = client != null ? client.world : null;
         
         if (world == null || client.player == null) {
             return;
         }
         
+        SceneUpdateEvent event = UPDATE_EVENT_TYPE.isEnabled() ? new SceneUpdateEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        
         // Update scene data based on current world state
         // This would involve updating block data, lighting, entities, etc.
         // For now, this is a placeholder
+        
+        if (event != null) {
+            event.frameIndex = frameIndex;
+            event.uploadCount = frameUploadCount;
+            event.uploadBytes = frameUploadBytes;
+            event.commit();
+        }
+    }
+    
+    // Scene uploads report their size here so frame stats can relate stutters to upload volume
+    public void recordUpload(long bytes) {
+        frameUploadBytes += bytes;
+        frameUploadCount++;
+        
+        if (UPLOAD_EVENT_TYPE.isEnabled()) {
+            SceneUploadEvent event = new SceneUploadEvent();
+            event.frameIndex = frameIndex;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+    
+    public long getFrameUploadBytes() {
+        return frameUploadBytes;
     }
     
     public void cleanup() {
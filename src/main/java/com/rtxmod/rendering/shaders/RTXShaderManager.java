@@ -1,6 +1,8 @@
 package com.rtxmod.rendering.shaders;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.profiling.events.ShaderCompileEvent;
+import com.rtxmod.util.GLBackend;
 import org.lwjgl.opengl.GL46;
 
 import java.io.BufferedReader;
@@ -8,22 +10,108 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Manages RTX shaders including ray tracing, compute, and post-processing shaders
  */
 public class RTXShaderManager {
     
+    private final GLBackend gl = GLBackend.get();
     private final Map<String, RTXShaderProgram> shaderPrograms = new HashMap<>();
+    private final Map<String, String> globalDefines = new LinkedHashMap<>();
+    private final Map<String, Map<String, String>> programDefines = new TreeMap<>();
+    private final ShaderPreprocessor preprocessor = new ShaderPreprocessor(SHADER_ROOT, this::loadShaderSource);
+    private ShaderBinaryCache binaryCache = null;
+    private ShaderBundle bundle = null;
     private boolean initialized = false;
     
+    // Programs build in the background and replace the active set together once all of them are done
+    private final List<PendingProgram> pendingPrograms = new ArrayList<>();
+    private final List<PendingProgram> builtPrograms = new ArrayList<>();
+    private boolean parallelCompileSupported = false;
+    private boolean buildInProgress = false;
+    private boolean reuseVariants = false;
+    private String variantDefines = "";
+    private boolean ready = false;
+    private int failedProgramCount = 0;
+    private long buildStartTime = 0;
+    
+    // Every compiled permutation, keyed by program name and defines, least recently used first
+    private static final int MAX_CACHED_VARIANTS = 32;
+    private final LinkedHashMap<String, RTXShaderProgram> variantCache = new LinkedHashMap<>(16, 0.75f, true);
+    
+    // Stage paths of every program, and every file its current sources were expanded from
+    private final Map<String, String[]> programStages = new LinkedHashMap<>();
+    private final Map<String, Set<String>> programDependencies = new HashMap<>();
+    
+    // Development mode: sources load from disk and edits rebuild only the programs that use them
+    private static final long SOURCE_SETTLE_NANOS = 100_000_000L;
+    private ShaderSourceWatcher sourceWatcher = null;
+    private final Set<String> changedSources = new LinkedHashSet<>();
+    private boolean sourceEventsLost = false;
+    private long lastSourceChangeTime = 0;
+    
+    // Observes per-pixel dispatches, e.g. to time each kernel
+    private DispatchTimer dispatchTimer = null;
+    
+    public interface DispatchTimer {
+        void beforeDispatch(String programName);
+        void afterDispatch(String programName);
+    }
+    
+    private static final class PendingProgram {
+        final String name;
+        final String variantKey;
+        final RTXShaderProgram program;
+        final String cacheKey;
+        final String vertexSource;
+        final String fragmentSource;
+        final String computeSource;
+        final boolean fromVariantCache;
+        boolean submitted = false;
+        
+        // Spans from queueing to link, committed once the program is built or has failed
+        final ShaderCompileEvent event = new ShaderCompileEvent();
+        
+        PendingProgram(String name, String variantKey, RTXShaderProgram program, String cacheKey,
+                       String vertexSource, String fragmentSource, String computeSource) {
+            this(name, variantKey, program, cacheKey, vertexSource, fragmentSource, computeSource, false);
+        }
+        
+        PendingProgram(String name, String variantKey, RTXShaderProgram program, String cacheKey,
+                       String vertexSource, String fragmentSource, String computeSource, boolean fromVariantCache) {
+            this.name = name;
+            this.variantKey = variantKey;
+            this.program = program;
+            this.cacheKey = cacheKey;
+            this.vertexSource = vertexSource;
+            this.fragmentSource = fragmentSource;
+            this.computeSource = computeSource;
+            this.fromVariantCache = fromVariantCache;
+        }
+    }
+    
+    // #include paths resolve against this root
+    private static final String SHADER_ROOT = "/assets/rtx-mod/shaders/";
+    
     // Shader program names
     public static final String RAY_TRACING_PROGRAM = "ray_tracing";
-    public static final String TEMPORAL_ACCUMULATION_PROGRAM = "temporal_accumulation";
+    public static final String POST_PROCESS_PROGRAM = "post_process";
     public static final String DENOISING_PROGRAM = "denoising";
-    public static final String TONE_MAPPING_PROGRAM = "tone_mapping";
+    public static final String LUMINANCE_HISTOGRAM_PROGRAM = "luminance_histogram";
+    public static final String EXPOSURE_AVERAGE_PROGRAM = "exposure_average";
     public static final String UPSCALING_PROGRAM = "upscaling";
     public static final String G_BUFFER_PROGRAM = "g_buffer";
     public static final String LIGHTING_PROGRAM = "lighting";
@@ -34,16 +122,23 @@ public class RTXShaderManager {
         try {
             RTXMod.LOGGER.info("Initializing RTX Shader Manager...");
             
-            // Load core RTX shaders
-            loadRayTracingShaders();
-            loadPostProcessingShaders();
-            loadUtilityShaders();
+            // All ones lets the driver pick its thread count
+            parallelCompileSupported = gl.maxShaderCompilerThreads(0xFFFFFFFF);
             
-            initialized = true;
-            RTXMod.LOGGER.info("RTX Shader Manager initialization complete! Loaded {} programs", shaderPrograms.size());
+            // One read for every source; without it there is nothing real to compile, so it fails the manager
+            bundle = ShaderBundle.load(SHADER_ROOT);
+            RTXMod.LOGGER.info("Loaded shader bundle with {} sources", bundle.size());
+            
+            startBuild(true);
             
+            initialized = true;
+            RTXMod.LOGGER.info("RTX Shader Manager initialized, building {} programs ({})",
+                pendingPrograms.size() + builtPrograms.size(),
+                parallelCompileSupported ? "parallel compile" : "one program per frame");
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to initialize RTX Shader Manager: ", e);
+            cancelBuild();
             initialized = false;
         }
     }
@@ -65,18 +160,19 @@ public class RTXShaderManager {
     }
     
     private void loadPostProcessingShaders() {
-        // Temporal accumulation for progressive ray tracing
-        createComputeShaderProgram(TEMPORAL_ACCUMULATION_PROGRAM,
-            "/assets/rtx-mod/shaders/temporal_accumulation.comp");
+        // Per-pixel stages: temporal accumulation, exposure and tone mapping
+        createComputeShaderProgram(POST_PROCESS_PROGRAM,
+            "/assets/rtx-mod/shaders/post_process.comp");
         
-        // AI-based denoising
+        // A-trous wavelet denoising
         createComputeShaderProgram(DENOISING_PROGRAM,
             "/assets/rtx-mod/shaders/denoising.comp");
         
-        // Tone mapping and HDR processing
-        createShaderProgram(TONE_MAPPING_PROGRAM,
-            "/assets/rtx-mod/shaders/tonemap.vert",
-            "/assets/rtx-mod/shaders/tonemap.frag");
+        // Auto-exposure: luminance histogram and its reduction
+        createComputeShaderProgram(LUMINANCE_HISTOGRAM_PROGRAM,
+            "/assets/rtx-mod/shaders/luminance_histogram.comp");
+        createComputeShaderProgram(EXPOSURE_AVERAGE_PROGRAM,
+            "/assets/rtx-mod/shaders/exposure_average.comp");
         
         // AI upscaling (DLSS-like)
         createComputeShaderProgram(UPSCALING_PROGRAM,
@@ -89,42 +185,369 @@ public class RTXShaderManager {
     
     private void createShaderProgram(String name, String vertexPath, String fragmentPath) {
         try {
-            String vertexSource = loadShaderSource(vertexPath);
-            String fragmentSource = loadShaderSource(fragmentPath);
+            programStages.put(name, new String[] {vertexPath, fragmentPath});
+            Map<String, String> defines = definesFor(name);
+            String definesKey = describeDefines(defines);
+            String variantKey = name + "\n" + definesKey;
+            if (reuseVariants && useCachedVariant(name, variantKey)) {
+                return;
+            }
+            
+            // A program that fails to preprocess still rebuilds when its own files change
+            Set<String> dependencies = new HashSet<>(List.of(vertexPath, fragmentPath));
+            programDependencies.put(name, dependencies);
             
-            RTXShaderProgram program = new RTXShaderProgram();
-            program.createVertexShader(vertexSource);
-            program.createFragmentShader(fragmentSource);
-            program.link();
+            ShaderPreprocessor.Result vertex = preprocessor.process(vertexPath, defines);
+            ShaderPreprocessor.Result fragment = preprocessor.process(fragmentPath, defines);
+            dependencies.addAll(vertex.getFiles());
+            dependencies.addAll(fragment.getFiles());
             
-            shaderPrograms.put(name, program);
-            RTXMod.LOGGER.debug("Loaded shader program: {}", name);
+            String vertexSource = vertex.getSource();
+            String fragmentSource = fragment.getSource();
             
+            String cacheKey = computeCacheKey(name, definesKey, vertex, fragment);
+            queueProgram(new PendingProgram(name, variantKey, new RTXShaderProgram(name), cacheKey,
+                vertexSource, fragmentSource, null));
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to load shader program {}: ", name, e);
+            failedProgramCount++;
         }
     }
     
     private void createComputeShaderProgram(String name, String computePath) {
         try {
-            String computeSource = loadShaderSource(computePath);
+            programStages.put(name, new String[] {computePath});
+            Map<String, String> defines = definesFor(name);
+            String definesKey = describeDefines(defines);
+            String variantKey = name + "\n" + definesKey;
+            if (reuseVariants && useCachedVariant(name, variantKey)) {
+                return;
+            }
+            
+            Set<String> dependencies = new HashSet<>(List.of(computePath));
+            programDependencies.put(name, dependencies);
             
-            RTXShaderProgram program = new RTXShaderProgram();
-            program.createComputeShader(computeSource);
-            program.link();
+            ShaderPreprocessor.Result compute = preprocessor.process(computePath, defines);
+            dependencies.addAll(compute.getFiles());
             
-            shaderPrograms.put(name, program);
-            RTXMod.LOGGER.debug("Loaded compute shader program: {}", name);
+            String computeSource = compute.getSource();
             
+            String cacheKey = computeCacheKey(name, definesKey, compute);
+            queueProgram(new PendingProgram(name, variantKey, new RTXShaderProgram(name), cacheKey,
+                null, null, computeSource));
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Failed to load compute shader program {}: ", name, e);
+            failedProgramCount++;
+        }
+    }
+    
+    // Global defines with the program's own on top
+    private Map<String, String> definesFor(String name) {
+        Map<String, String> overrides = programDefines.get(name);
+        if (overrides == null || overrides.isEmpty()) {
+            return globalDefines;
+        }
+        Map<String, String> defines = new LinkedHashMap<>(globalDefines);
+        defines.putAll(overrides);
+        return defines;
+    }
+    
+    private String computeCacheKey(String name, String definesKey, ShaderPreprocessor.Result... stages) {
+        if (binaryCache == null) {
+            return null;
+        }
+        
+        // Expanded sources follow from the defines and their files, whose hashes the build already computed
+        List<String> parts = new ArrayList<>();
+        if (sourceWatcher == null) {
+            parts.add(definesKey);
+            for (ShaderPreprocessor.Result stage : stages) {
+                for (String file : stage.getFiles()) {
+                    String hash = bundle.getHash(file);
+                    if (hash == null) {
+                        // Generated default shader, hash what was actually compiled
+                        return computeSourceKey(name, stages);
+                    }
+                    parts.add(file);
+                    parts.add(hash);
+                }
+                parts.add("|");
+            }
+            return binaryCache.computeKey(name, parts.toArray(new String[0]));
+        }
+        return computeSourceKey(name, stages);
+    }
+    
+    private String computeSourceKey(String name, ShaderPreprocessor.Result... stages) {
+        String[] sources = new String[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            sources[i] = stages[i].getSource();
+        }
+        return binaryCache.computeKey(name, sources);
+    }
+    
+    // A permutation compiled earlier in this session swaps back in without touching the compiler
+    private boolean useCachedVariant(String name, String variantKey) {
+        RTXShaderProgram cached = variantCache.get(variantKey);
+        if (cached == null) {
+            return false;
+        }
+        builtPrograms.add(new PendingProgram(name, variantKey, cached, null, null, null, null, true));
+        return true;
+    }
+    
+    private void queueProgram(PendingProgram pending) throws Exception {
+        pending.event.begin();
+        try {
+            // Cached binaries load without compiling, so there is nothing to wait for
+            boolean compute = pending.computeSource != null;
+            if (pending.cacheKey != null && binaryCache.load(pending.cacheKey, pending.program, compute)) {
+                builtPrograms.add(pending);
+                commitCompileEvent(pending, true, true);
+                return;
+            }
+            
+            if (parallelCompileSupported) {
+                submit(pending);
+            }
+            pendingPrograms.add(pending);
+        } catch (Exception e) {
+            commitCompileEvent(pending, false, false);
+            pending.program.cleanup();
+            throw e;
+        }
+    }
+    
+    private void commitCompileEvent(PendingProgram pending, boolean fromBinaryCache, boolean succeeded) {
+        ShaderCompileEvent event = pending.event;
+        if (!event.shouldCommit()) return;
+        
+        event.program = pending.name;
+        event.defines = pending.variantKey.substring(pending.name.length() + 1);
+        event.fromBinaryCache = fromBinaryCache;
+        event.parallel = parallelCompileSupported;
+        event.succeeded = succeeded;
+        event.commit();
+    }
+    
+    private void submit(PendingProgram pending) throws Exception {
+        if (pending.computeSource != null) {
+            pending.program.compileShaderAsync(pending.computeSource, GL46.GL_COMPUTE_SHADER);
+        } else {
+            pending.program.compileShaderAsync(pending.vertexSource, GL46.GL_VERTEX_SHADER);
+            pending.program.compileShaderAsync(pending.fragmentSource, GL46.GL_FRAGMENT_SHADER);
+        }
+        pending.program.linkAsync();
+        pending.submitted = true;
+    }
+    
+    private void startBuild(boolean reuseVariants) {
+        startBuild(reuseVariants, null);
+    }
+    
+    // Builds the named programs only, or every program when programNames is null
+    private void startBuild(boolean reuseVariants, Set<String> programNames) {
+        this.reuseVariants = reuseVariants;
+        variantDefines = describeDefines();
+        failedProgramCount = 0;
+        buildStartTime = System.nanoTime();
+        buildInProgress = true;
+        
+        if (programNames == null) {
+            // Load core RTX shaders
+            loadRayTracingShaders();
+            loadPostProcessingShaders();
+            loadUtilityShaders();
+            return;
+        }
+        
+        for (String name : programNames) {
+            String[] stages = programStages.get(name);
+            if (stages.length == 1) {
+                createComputeShaderProgram(name, stages[0]);
+            } else {
+                createShaderProgram(name, stages[0], stages[1]);
+            }
+        }
+    }
+    
+    /**
+     * Advances the background build, call once per frame on the render thread
+     */
+    public void update() {
+        if (!initialized) return;
+        
+        if (sourceWatcher != null) {
+            processSourceChanges();
+        }
+        if (!buildInProgress) return;
+        
+        Iterator<PendingProgram> iterator = pendingPrograms.iterator();
+        while (iterator.hasNext()) {
+            PendingProgram pending = iterator.next();
+            boolean buildNow = !pending.submitted;
+            try {
+                if (buildNow) {
+                    // No driver-side threads: build one program per frame, blocking only for that one
+                    submit(pending);
+                } else if (!pending.program.isBuildComplete(parallelCompileSupported)) {
+                    continue;
+                }
+                finish(pending);
+            } catch (Exception e) {
+                RTXMod.LOGGER.error("Failed to build shader program {}: ", pending.name, e);
+                commitCompileEvent(pending, false, false);
+                pending.program.cleanup();
+                failedProgramCount++;
+            }
+            iterator.remove();
+            
+            if (buildNow) {
+                break;
+            }
+        }
+        
+        if (pendingPrograms.isEmpty()) {
+            swapPrograms();
+        }
+    }
+    
+    private void processSourceChanges() {
+        int knownChanges = changedSources.size();
+        boolean eventsLost = sourceWatcher.poll(changedSources);
+        long now = System.nanoTime();
+        if (eventsLost || changedSources.size() != knownChanges) {
+            sourceEventsLost |= eventsLost;
+            lastSourceChangeTime = now;
+        }
+        
+        // Editors save in several writes; edits during a build wait for it, cancelling could drop its programs
+        if (changedSources.isEmpty() && !sourceEventsLost) return;
+        if (buildInProgress || now - lastSourceChangeTime < SOURCE_SETTLE_NANOS) return;
+        
+        if (sourceEventsLost) {
+            RTXMod.LOGGER.warn("Shader watcher dropped events, rebuilding every program");
+            startBuild(false);
+        } else {
+            Set<String> affected = new LinkedHashSet<>();
+            for (Map.Entry<String, Set<String>> entry : programDependencies.entrySet()) {
+                for (String changed : changedSources) {
+                    if (entry.getValue().contains(changed)) {
+                        affected.add(entry.getKey());
+                        break;
+                    }
+                }
+            }
+            
+            if (!affected.isEmpty()) {
+                RTXMod.LOGGER.info("Shader sources changed {}, rebuilding {}", changedSources, affected);
+                startBuild(false, affected);
+            }
+        }
+        
+        changedSources.clear();
+        sourceEventsLost = false;
+        lastSourceChangeTime = 0;
+    }
+    
+    private void finish(PendingProgram pending) throws Exception {
+        pending.program.finishLink();
+        if (pending.cacheKey != null) {
+            binaryCache.store(pending.cacheKey, pending.program);
+        }
+        builtPrograms.add(pending);
+        commitCompileEvent(pending, false, true);
+        RTXMod.LOGGER.debug("Built shader program: {}", pending.name);
+    }
+    
+    private void swapPrograms() {
+        // Failed programs keep their previous version, everything else switches over in the same frame
+        int compiledCount = 0;
+        for (PendingProgram built : builtPrograms) {
+            shaderPrograms.put(built.name, built.program);
+            RTXShaderProgram replaced = variantCache.put(built.variantKey, built.program);
+            if (replaced != null && replaced != built.program) {
+                // Same permutation rebuilt from edited sources
+                replaced.cleanup();
+            }
+            if (!built.fromVariantCache) {
+                compiledCount++;
+            }
+        }
+        
+        // After a source reload the other permutations of the rebuilt programs are stale
+        if (!reuseVariants) {
+            evictStaleVariants();
+        }
+        evictInactiveVariants(MAX_CACHED_VARIANTS);
+        
+        RTXMod.LOGGER.info("Shader build complete: {} programs ({} compiled, {} reused) in {} ms ({} failed)",
+            builtPrograms.size(), compiledCount, builtPrograms.size() - compiledCount,
+            (System.nanoTime() - buildStartTime) / 1_000_000, failedProgramCount);
+        if (binaryCache != null) {
+            binaryCache.logStatistics();
+        }
+        
+        builtPrograms.clear();
+        buildInProgress = false;
+        ready = true;
+    }
+    
+    private void cancelBuild() {
+        for (PendingProgram pending : pendingPrograms) {
+            pending.program.cleanup();
+        }
+        pendingPrograms.clear();
+        for (PendingProgram built : builtPrograms) {
+            if (!built.fromVariantCache) {
+                built.program.cleanup();
+            }
+        }
+        builtPrograms.clear();
+        buildInProgress = false;
+    }
+    
+    private void evictInactiveVariants(int maxVariants) {
+        Iterator<RTXShaderProgram> iterator = variantCache.values().iterator();
+        while (variantCache.size() > maxVariants && iterator.hasNext()) {
+            RTXShaderProgram program = iterator.next();
+            if (!shaderPrograms.containsValue(program)) {
+                program.cleanup();
+                iterator.remove();
+            }
+        }
+    }
+    
+    private void evictStaleVariants() {
+        Set<String> rebuiltNames = new HashSet<>();
+        for (PendingProgram built : builtPrograms) {
+            rebuiltNames.add(built.name);
+        }
+        
+        Iterator<Map.Entry<String, RTXShaderProgram>> iterator = variantCache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, RTXShaderProgram> entry = iterator.next();
+            String name = entry.getKey().substring(0, entry.getKey().indexOf('\n'));
+            if (rebuiltNames.contains(name) && !shaderPrograms.containsValue(entry.getValue())) {
+                entry.getValue().cleanup();
+                iterator.remove();
+            }
         }
     }
     
     private String loadShaderSource(String resourcePath) throws IOException {
-        InputStream stream = RTXShaderManager.class.getResourceAsStream(resourcePath);
+        InputStream stream = openSourceFile(resourcePath);
         if (stream == null) {
-            // Create a default shader if the resource doesn't exist
+            String bundled = bundle.getSource(resourcePath);
+            if (bundled != null) {
+                return bundled;
+            }
+            if (resourcePath.endsWith(".glsl")) {
+                throw new IOException("Shader include not found: " + resourcePath);
+            }
+            // Programs the mod doesn't ship a source for yet, the bundle itself was verified on load
             return createDefaultShader(resourcePath);
         }
         
@@ -139,6 +562,34 @@ public class RTXShaderManager {
         return source.toString();
     }
     
+    // In development mode the watched directory shadows the bundled sources
+    private InputStream openSourceFile(String resourcePath) throws IOException {
+        if (sourceWatcher == null || !resourcePath.startsWith(SHADER_ROOT)) {
+            return null;
+        }
+        Path file = sourceWatcher.getRootDirectory().resolve(resourcePath.substring(SHADER_ROOT.length()));
+        return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+    }
+    
+    // Every define of every program, a change means some permutation has to switch
+    private String describeDefines() {
+        StringBuilder builder = new StringBuilder(describeDefines(globalDefines));
+        for (Map.Entry<String, Map<String, String>> program : programDefines.entrySet()) {
+            if (!program.getValue().isEmpty()) {
+                builder.append(program.getKey()).append(':').append(describeDefines(program.getValue()));
+            }
+        }
+        return builder.toString();
+    }
+    
+    private static String describeDefines(Map<String, String> defines) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            builder.append(define.getKey()).append('=').append(define.getValue()).append(';');
+        }
+        return builder.toString();
+    }
+    
     private String createDefaultShader(String resourcePath) {
         RTXMod.LOGGER.warn("Shader resource not found: {}, creating default", resourcePath);
         
@@ -184,13 +635,15 @@ public class RTXShaderManager {
         return """
             #version 460 core
             
+            #include "lib/packing.glsl"
+            
             in vec2 vTexCoord;
             in vec3 vNormal;
             in vec3 vWorldPos;
             
             layout (location = 0) out vec4 fragColor;
-            layout (location = 1) out vec3 fragNormal;
-            layout (location = 2) out vec4 fragMaterial;
+            layout (location = 1) out vec4 fragNormal;
+            layout (location = 2) out RTX_MATERIAL_OUTPUT fragMaterial;
             layout (location = 3) out vec2 fragMotionVector;
             
             uniform sampler2D uDiffuseTexture;
@@ -199,8 +652,8 @@ public class RTXShaderManager {
             void main() {
                 vec4 diffuse = texture(uDiffuseTexture, vTexCoord);
                 fragColor = diffuse;
-                fragNormal = normalize(vNormal) * 0.5 + 0.5;
-                fragMaterial = vec4(0.5, 0.0, 1.0, 0.0); // roughness, metallic, ao, emission
+                fragNormal = encodeGBufferNormal(vNormal);
+                fragMaterial = encodeGBufferMaterial(vec4(0.5, 0.0, 1.0, 0.0)); // roughness, metallic, ao, emission
                 fragMotionVector = vec2(0.0); // No motion for now
             }
             """;
@@ -210,11 +663,16 @@ public class RTXShaderManager {
         return """
             #version 460 core
             
-            layout (local_size_x = 16, local_size_y = 16) in;
+            #include "lib/workgroup.glsl"
+            
+            layout (local_size_x = RTX_LOCAL_SIZE_X, local_size_y = RTX_LOCAL_SIZE_Y) in;
             layout (rgba16f, binding = 0) uniform image2D img_output;
             
             uniform float uTime;
             
+            // Sub-pixel offset of this frame, the upscaler expects pixel i to be shaded at i + 0.5 + uJitter
+            uniform vec2 uJitter;
+            
             void main() {
                 ivec2 pixel_coords = ivec2(gl_GlobalInvocationID.xy);
                 ivec2 dims = imageSize(img_output);
@@ -223,7 +681,7 @@ public class RTXShaderManager {
                     return;
                 }
                 
-                vec2 uv = vec2(pixel_coords) / vec2(dims);
+                vec2 uv = (vec2(pixel_coords) + 0.5 + uJitter) / vec2(dims);
                 vec4 color = vec4(uv, 0.5, 1.0);
                 
                 imageStore(img_output, pixel_coords, color);
@@ -231,6 +689,53 @@ public class RTXShaderManager {
             """;
     }
     
+    /**
+     * Development mode: loads sources from the directory and rebuilds the programs affected by each saved file
+     */
+    public void watchSourceDirectory(Path directory) {
+        if (sourceWatcher != null) {
+            sourceWatcher.close();
+            sourceWatcher = null;
+        }
+        
+        try {
+            sourceWatcher = new ShaderSourceWatcher(directory, SHADER_ROOT);
+        } catch (IOException e) {
+            RTXMod.LOGGER.error("Failed to watch shader directory {}: ", directory, e);
+        }
+    }
+    
+    // Linked programs are loaded from and saved to this cache when set
+    public void setBinaryCache(ShaderBinaryCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+    
+    // Defines apply from the next initialize, reload or rebuildVariants
+    public void setDefine(String name, String value) {
+        globalDefines.put(name, value != null ? value : "");
+    }
+    
+    public void setDefine(String name, boolean enabled) {
+        if (enabled) {
+            globalDefines.put(name, "");
+        } else {
+            globalDefines.remove(name);
+        }
+    }
+    
+    // Define for one program only, overriding a global one of the same name; null removes it
+    public void setProgramDefine(String programName, String name, String value) {
+        if (value != null) {
+            programDefines.computeIfAbsent(programName, key -> new LinkedHashMap<>()).put(name, value);
+        } else if (programDefines.containsKey(programName)) {
+            programDefines.get(programName).remove(name);
+        }
+    }
+    
+    public void setDispatchTimer(DispatchTimer dispatchTimer) {
+        this.dispatchTimer = dispatchTimer;
+    }
+    
     public RTXShaderProgram getShaderProgram(String name) {
         return shaderPrograms.get(name);
     }
@@ -248,22 +753,53 @@ public class RTXShaderManager {
         RTXShaderProgram program = shaderPrograms.get(programName);
         if (program != null && program.isComputeShader()) {
             program.bind();
-            GL46.glDispatchCompute(workGroupX, workGroupY, workGroupZ);
-            GL46.glMemoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+            gl.dispatchCompute(workGroupX, workGroupY, workGroupZ);
+            gl.memoryBarrier(GL46.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
         } else {
             RTXMod.LOGGER.warn("Compute shader program not found or invalid: {}", programName);
         }
     }
     
+    /**
+     * Dispatches a per-pixel kernel over width x height, at the local size the program was linked with
+     * The caller passes the program it bound along with its resources, barriers are left to the caller too
+     */
+    public void dispatch2D(RTXShaderProgram program, int width, int height) {
+        if (dispatchTimer != null) {
+            dispatchTimer.beforeDispatch(program.getName());
+        }
+        program.dispatch2D(width, height);
+        if (dispatchTimer != null) {
+            dispatchTimer.afterDispatch(program.getName());
+        }
+    }
+    
     public void reloadShaders() {
+        if (!initialized) {
+            initialize();
+            return;
+        }
+        
         RTXMod.LOGGER.info("Reloading RTX shaders...");
         
-        // Cleanup existing shaders
-        cleanup();
-        shaderPrograms.clear();
+        // Sources may have changed, so every program is recompiled; current ones stay active until then
+        cancelBuild();
+        startBuild(false);
+    }
+    
+    /**
+     * Switches to the permutations for the current defines, reusing any compiled earlier this session
+     */
+    public void rebuildVariants() {
+        if (!initialized) return;
         
-        // Reload all shaders
-        initialize();
+        String defines = describeDefines();
+        if (!buildInProgress && defines.equals(variantDefines)) {
+            return;
+        }
+        
+        cancelBuild();
+        startBuild(true);
     }
     
     public void cleanup() {
@@ -271,12 +807,22 @@ public class RTXShaderManager {
         
         RTXMod.LOGGER.info("Cleaning up RTX shaders...");
         
-        for (RTXShaderProgram program : shaderPrograms.values()) {
+        cancelBuild();
+        
+        // Every active program is also a cached variant
+        for (RTXShaderProgram program : variantCache.values()) {
             program.cleanup();
         }
+        variantCache.clear();
         shaderPrograms.clear();
         
+        if (sourceWatcher != null) {
+            sourceWatcher.close();
+            sourceWatcher = null;
+        }
+        
         initialized = false;
+        ready = false;
         RTXMod.LOGGER.info("RTX shader cleanup complete");
     }
     
@@ -285,10 +831,23 @@ public class RTXShaderManager {
         return initialized;
     }
     
+    // True once the first build has finished and programs are available
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public boolean isBuildInProgress() {
+        return buildInProgress;
+    }
+    
     public int getShaderCount() {
         return shaderPrograms.size();
     }
     
+    public int getCachedVariantCount() {
+        return variantCache.size();
+    }
+    
     public boolean hasShader(String name) {
         return shaderPrograms.containsKey(name);
     }
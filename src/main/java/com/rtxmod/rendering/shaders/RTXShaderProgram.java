@@ -1,10 +1,13 @@
 package com.rtxmod.rendering.shaders;
 
 import com.rtxmod.RTXMod;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.GLStateCache;
 import org.lwjgl.opengl.GL46;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
 import org.joml.*;
 
-import java.nio.FloatBuffer;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,17 +16,26 @@ import java.util.Map;
  */
 public class RTXShaderProgram {
     
+    private final GLBackend gl = GLBackend.get();
+    
+    // Name the manager registered this program under, reported to dispatch timers
+    private final String name;
     private int programId;
     private int vertexShaderId;
     private int fragmentShaderId;
     private int computeShaderId;
     
-    private final Map<String, Integer> uniformLocations = new HashMap<>();
+    // Active uniforms enumerated at link time, plus inactive stand-ins for names the program doesn't use
+    private final Map<String, ShaderUniform> uniforms = new HashMap<>();
     private boolean isCompute = false;
     private boolean linked = false;
     
-    public RTXShaderProgram() {
-        programId = GL46.glCreateProgram();
+    // Compute local size as linked, dispatches derive their group counts from it
+    private final int[] localSize = {1, 1, 1};
+    
+    public RTXShaderProgram(String name) {
+        this.name = name;
+        programId = gl.createProgram();
         if (programId == 0) {
             throw new RuntimeException("Could not create shader program");
         }
@@ -43,184 +55,264 @@ public class RTXShaderProgram {
     }
     
     private int createShader(String shaderCode, int shaderType) throws Exception {
-        int shaderId = GL46.glCreateShader(shaderType);
+        int shaderId = gl.createShader(shaderType);
         if (shaderId == 0) {
             throw new Exception("Error creating shader. Type: " + shaderType);
         }
         
-        GL46.glShaderSource(shaderId, shaderCode);
-        GL46.glCompileShader(shaderId);
+        gl.shaderSource(shaderId, shaderCode);
+        gl.compileShader(shaderId);
         
-        if (GL46.glGetShaderi(shaderId, GL46.GL_COMPILE_STATUS) == 0) {
-            String log = GL46.glGetShaderInfoLog(shaderId, 1024);
+        if (gl.getShaderi(shaderId, GL46.GL_COMPILE_STATUS) == 0) {
+            String log = gl.getShaderInfoLog(shaderId);
             throw new Exception("Error compiling Shader code: " + log + " for shader type: " + shaderType);
         }
         
-        GL46.glAttachShader(programId, shaderId);
+        gl.attachShader(programId, shaderId);
         return shaderId;
     }
     
     public void link() throws Exception {
-        GL46.glLinkProgram(programId);
-        if (GL46.glGetProgrami(programId, GL46.GL_LINK_STATUS) == 0) {
-            String log = GL46.glGetProgramInfoLog(programId, 1024);
+        linkAsync();
+        finishLink();
+    }
+    
+    // Non-blocking build: compile and link without querying status, then finishLink once isBuildComplete
+    public void compileShaderAsync(String shaderCode, int shaderType) throws Exception {
+        int shaderId = gl.createShader(shaderType);
+        if (shaderId == 0) {
+            throw new Exception("Error creating shader. Type: " + shaderType);
+        }
+        
+        gl.shaderSource(shaderId, shaderCode);
+        gl.compileShader(shaderId);
+        gl.attachShader(programId, shaderId);
+        
+        if (shaderType == GL46.GL_VERTEX_SHADER) {
+            vertexShaderId = shaderId;
+        } else if (shaderType == GL46.GL_FRAGMENT_SHADER) {
+            fragmentShaderId = shaderId;
+        } else if (shaderType == GL46.GL_COMPUTE_SHADER) {
+            computeShaderId = shaderId;
+            isCompute = true;
+        }
+    }
+    
+    public void linkAsync() {
+        // Lets ShaderBinaryCache read the linked binary back
+        gl.programParameteri(programId, GL46.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL46.GL_TRUE);
+        gl.linkProgram(programId);
+    }
+    
+    // Without parallel compile support any status query blocks, so the build counts as complete
+    public boolean isBuildComplete(boolean parallelCompile) {
+        return !parallelCompile
+            || gl.getProgrami(programId, KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR) == GL46.GL_TRUE;
+    }
+    
+    public void finishLink() throws Exception {
+        if (gl.getProgrami(programId, GL46.GL_LINK_STATUS) == 0) {
+            StringBuilder log = new StringBuilder(gl.getProgramInfoLog(programId));
+            appendCompileLog(log, vertexShaderId, "vertex");
+            appendCompileLog(log, fragmentShaderId, "fragment");
+            appendCompileLog(log, computeShaderId, "compute");
             throw new Exception("Error linking Shader code: " + log);
         }
         
-        if (vertexShaderId != 0) {
-            GL46.glDetachShader(programId, vertexShaderId);
+        vertexShaderId = releaseShader(vertexShaderId);
+        fragmentShaderId = releaseShader(fragmentShaderId);
+        computeShaderId = releaseShader(computeShaderId);
+        
+        reflectUniforms();
+        reflectLocalSize();
+        linked = true;
+        
+        // Validate program
+        gl.validateProgram(programId);
+        if (gl.getProgrami(programId, GL46.GL_VALIDATE_STATUS) == 0) {
+            RTXMod.LOGGER.warn("Warning validating Shader code: {}", gl.getProgramInfoLog(programId));
+        }
+    }
+    
+    private void appendCompileLog(StringBuilder log, int shaderId, String stage) {
+        if (shaderId != 0 && gl.getShaderi(shaderId, GL46.GL_COMPILE_STATUS) == 0) {
+            log.append("\n").append(stage).append(": ").append(gl.getShaderInfoLog(shaderId));
         }
-        if (fragmentShaderId != 0) {
-            GL46.glDetachShader(programId, fragmentShaderId);
+    }
+    
+    private int releaseShader(int shaderId) {
+        if (shaderId != 0) {
+            gl.detachShader(programId, shaderId);
+            gl.deleteShader(shaderId);
         }
-        if (computeShaderId != 0) {
-            GL46.glDetachShader(programId, computeShaderId);
+        return 0;
+    }
+    
+    // Replaces compile and link with a binary from glGetProgramBinary, false if the driver rejects it
+    public boolean loadBinary(int binaryFormat, ByteBuffer binary, boolean compute) {
+        gl.programBinary(programId, binaryFormat, binary);
+        if (gl.getProgrami(programId, GL46.GL_LINK_STATUS) == 0) {
+            return false;
         }
         
+        isCompute = compute;
+        reflectUniforms();
+        reflectLocalSize();
         linked = true;
+        return true;
+    }
+    
+    private void reflectUniforms() {
+        uniforms.clear();
         
-        // Validate program
-        GL46.glValidateProgram(programId);
-        if (GL46.glGetProgrami(programId, GL46.GL_VALIDATE_STATUS) == 0) {
-            RTXMod.LOGGER.warn("Warning validating Shader code: {}", GL46.glGetProgramInfoLog(programId, 1024));
+        int uniformCount = gl.getProgrami(programId, GL46.GL_ACTIVE_UNIFORMS);
+        int[] size = new int[1];
+        int[] type = new int[1];
+        for (int i = 0; i < uniformCount; i++) {
+            String uniformName = gl.getActiveUniform(programId, i, size, type);
+            int location = gl.getUniformLocation(programId, uniformName);
+            if (location < 0) {
+                // Uniform block member, set through its buffer
+                continue;
+            }
+            
+            // Arrays are reported as "name[0]"
+            if (uniformName.endsWith("[0]")) {
+                uniformName = uniformName.substring(0, uniformName.length() - 3);
+            }
+            uniforms.put(uniformName, new ShaderUniform(gl, programId, uniformName, location, type[0]));
         }
     }
     
-    public void bind() {
-        GL46.glUseProgram(programId);
+    private void reflectLocalSize() {
+        if (isCompute) {
+            gl.getProgramiv(programId, GL46.GL_COMPUTE_WORK_GROUP_SIZE, localSize);
+        }
+    }
+    
+    /**
+     * Handle for a uniform, resolve once and keep it for hot passes
+     * Names the program doesn't use get a handle that ignores every set
+     */
+    public ShaderUniform getUniform(String uniformName) {
+        ShaderUniform uniform = uniforms.get(uniformName);
+        if (uniform == null) {
+            RTXMod.LOGGER.debug("Uniform '{}' not found in shader program {}", uniformName, programId);
+            uniform = ShaderUniform.inactive(gl, programId, uniformName);
+            uniforms.put(uniformName, uniform);
+        }
+        return uniform;
     }
     
-    public void unbind() {
-        GL46.glUseProgram(0);
+    public void bind() {
+        GLStateCache.useProgram(programId);
     }
     
     public void cleanup() {
-        unbind();
         if (programId != 0) {
-            GL46.glDeleteProgram(programId);
+            GLStateCache.onProgramDeleted(programId);
+            
+            // Shaders of a build that never finished are still attached
+            vertexShaderId = releaseShader(vertexShaderId);
+            fragmentShaderId = releaseShader(fragmentShaderId);
+            computeShaderId = releaseShader(computeShaderId);
+            
+            gl.deleteProgram(programId);
             programId = 0;
         }
     }
     
-    // Uniform setters
+    // Uniform setters, unchanged values skip the GL call
     public void setUniform(String uniformName, Matrix4f value) {
-        try (var stack = org.lwjgl.system.MemoryStack.stackPush()) {
-            FloatBuffer buffer = stack.mallocFloat(16);
-            value.get(buffer);
-            GL46.glUniformMatrix4fv(getUniformLocation(uniformName), false, buffer);
-        }
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, Matrix3f value) {
-        try (var stack = org.lwjgl.system.MemoryStack.stackPush()) {
-            FloatBuffer buffer = stack.mallocFloat(9);
-            value.get(buffer);
-            GL46.glUniformMatrix3fv(getUniformLocation(uniformName), false, buffer);
-        }
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, Vector4f value) {
-        GL46.glUniform4f(getUniformLocation(uniformName), value.x, value.y, value.z, value.w);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, Vector3f value) {
-        GL46.glUniform3f(getUniformLocation(uniformName), value.x, value.y, value.z);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, Vector2f value) {
-        GL46.glUniform2f(getUniformLocation(uniformName), value.x, value.y);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, float value) {
-        GL46.glUniform1f(getUniformLocation(uniformName), value);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, int value) {
-        GL46.glUniform1i(getUniformLocation(uniformName), value);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, boolean value) {
-        GL46.glUniform1i(getUniformLocation(uniformName), value ? 1 : 0);
+        getUniform(uniformName).set(value);
     }
     
     public void setUniform(String uniformName, float[] values) {
-        GL46.glUniform1fv(getUniformLocation(uniformName), values);
+        getUniform(uniformName).set(values);
     }
     
     public void setUniform(String uniformName, int[] values) {
-        GL46.glUniform1iv(getUniformLocation(uniformName), values);
+        getUniform(uniformName).set(values);
     }
     
     // Array uniforms
     public void setUniform(String uniformName, Vector3f[] values) {
-        int location = getUniformLocation(uniformName);
-        try (var stack = org.lwjgl.system.MemoryStack.stackPush()) {
-            FloatBuffer buffer = stack.mallocFloat(values.length * 3);
-            for (Vector3f value : values) {
-                value.get(buffer);
-                buffer.position(buffer.position() + 3);
-            }
-            buffer.flip();
-            GL46.glUniform3fv(location, buffer);
-        }
+        getUniform(uniformName).set(values);
     }
     
     public void setUniform(String uniformName, Matrix4f[] values) {
-        int location = getUniformLocation(uniformName);
-        try (var stack = org.lwjgl.system.MemoryStack.stackPush()) {
-            FloatBuffer buffer = stack.mallocFloat(values.length * 16);
-            for (Matrix4f value : values) {
-                value.get(buffer);
-                buffer.position(buffer.position() + 16);
-            }
-            buffer.flip();
-            GL46.glUniformMatrix4fv(location, false, buffer);
-        }
+        getUniform(uniformName).set(values);
     }
     
-    // Texture binding
+    // Texture binding, bound by unit so the target comes from the texture itself
     public void bindTexture(String uniformName, int textureId, int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D, textureId);
+        GLStateCache.bindTexture(unit, textureId);
         setUniform(uniformName, unit);
     }
     
     public void bindTextureArray(String uniformName, int textureId, int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_2D_ARRAY, textureId);
+        GLStateCache.bindTexture(unit, textureId);
         setUniform(uniformName, unit);
     }
     
     public void bindCubemap(String uniformName, int textureId, int unit) {
-        GL46.glActiveTexture(GL46.GL_TEXTURE0 + unit);
-        GL46.glBindTexture(GL46.GL_TEXTURE_CUBE_MAP, textureId);
+        GLStateCache.bindTexture(unit, textureId);
         setUniform(uniformName, unit);
     }
     
+    // Same through a resolved handle, for passes that run every frame
+    public void bindTexture(ShaderUniform sampler, int textureId, int unit) {
+        GLStateCache.bindTexture(unit, textureId);
+        sampler.set(unit);
+    }
+    
     // Image binding for compute shaders
     public void bindImage(String uniformName, int textureId, int unit, int access, int format) {
-        GL46.glBindImageTexture(unit, textureId, 0, false, 0, access, format);
+        GLStateCache.bindImageTexture(unit, textureId, access, format);
         setUniform(uniformName, unit);
     }
     
+    public void bindImage(ShaderUniform image, int textureId, int unit, int access, int format) {
+        GLStateCache.bindImageTexture(unit, textureId, access, format);
+        image.set(unit);
+    }
+    
     // Shader storage buffer binding
     public void bindSSBO(int ssboId, int binding) {
-        GL46.glBindBufferBase(GL46.GL_SHADER_STORAGE_BUFFER, binding, ssboId);
+        gl.bindBufferBase(GL46.GL_SHADER_STORAGE_BUFFER, binding, ssboId);
     }
     
     // Uniform buffer binding
     public void bindUBO(int uboId, int binding) {
-        GL46.glBindBufferBase(GL46.GL_UNIFORM_BUFFER, binding, uboId);
-    }
-    
-    private int getUniformLocation(String uniformName) {
-        return uniformLocations.computeIfAbsent(uniformName, name -> {
-            int location = GL46.glGetUniformLocation(programId, name);
-            if (location == -1) {
-                RTXMod.LOGGER.debug("Uniform '{}' not found in shader program {}", name, programId);
-            }
-            return location;
-        });
+        gl.bindBufferBase(GL46.GL_UNIFORM_BUFFER, binding, uboId);
     }
     
     // Utility methods for compute shaders
@@ -230,14 +322,23 @@ public class RTXShaderProgram {
             return;
         }
         bind();
-        GL46.glDispatchCompute(numGroupsX, numGroupsY, numGroupsZ);
+        gl.dispatchCompute(numGroupsX, numGroupsY, numGroupsZ);
+    }
+    
+    // Enough groups to cover width x height at the local size this program was compiled with
+    public void dispatch2D(int width, int height) {
+        dispatchCompute((width + localSize[0] - 1) / localSize[0], (height + localSize[1] - 1) / localSize[1], 1);
     }
     
     public void memoryBarrier(int barriers) {
-        GL46.glMemoryBarrier(barriers);
+        gl.memoryBarrier(barriers);
     }
     
     // Getters
+    public String getName() {
+        return name;
+    }
+    
     public int getProgramId() {
         return programId;
     }
@@ -250,19 +351,24 @@ public class RTXShaderProgram {
         return isCompute;
     }
     
+    public int getLocalSizeX() { return localSize[0]; }
+    public int getLocalSizeY() { return localSize[1]; }
+    
     // Debug methods
     public String getProgramInfoLog() {
-        return GL46.glGetProgramInfoLog(programId);
+        return gl.getProgramInfoLog(programId);
     }
     
     public void printActiveUniforms() {
-        int uniformCount = GL46.glGetProgrami(programId, GL46.GL_ACTIVE_UNIFORMS);
+        int uniformCount = gl.getProgrami(programId, GL46.GL_ACTIVE_UNIFORMS);
         RTXMod.LOGGER.info("Active uniforms for program {}: {}", programId, uniformCount);
         
+        int[] size = new int[1];
+        int[] type = new int[1];
         for (int i = 0; i < uniformCount; i++) {
-            String name = GL46.glGetActiveUniform(programId, i, 256);
-            int location = GL46.glGetUniformLocation(programId, name);
-            RTXMod.LOGGER.info("  {} -> location {}", name, location);
+            String uniformName = gl.getActiveUniform(programId, i, size, type);
+            int location = gl.getUniformLocation(programId, uniformName);
+            RTXMod.LOGGER.info("  {} -> location {}", uniformName, location);
         }
     }
 }
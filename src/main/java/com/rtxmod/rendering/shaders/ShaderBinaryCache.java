@@ -0,0 +1,212 @@
+package com.rtxmod.rendering.shaders;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.util.GLBackend;
+import org.lwjgl.opengl.GL46;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of linked program binaries
+ * Entries are keyed by the preprocessed sources (or the bundle hashes of their files), the driver and the mod version, so any change misses
+ */
+public class ShaderBinaryCache {
+    
+    private static final int FILE_MAGIC = 0x52545842; // "RTXB"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_EXTENSION = ".bin";
+    
+    // Entries nobody has loaded for this long are deleted on startup
+    private static final long MAX_ENTRY_AGE_MILLIS = TimeUnit.DAYS.toMillis(14);
+    
+    private final GLBackend gl = GLBackend.get();
+    private final Path cacheDirectory;
+    private final String environmentKey;
+    private boolean enabled;
+    
+    private int hitCount = 0;
+    private int missCount = 0;
+    
+    public ShaderBinaryCache(Path cacheDirectory, String driverSignature, String modVersion) {
+        this.cacheDirectory = cacheDirectory;
+        this.environmentKey = driverSignature + "\n" + modVersion;
+        
+        // Drivers may legitimately support no binary formats at all
+        this.enabled = gl.getInteger(GL46.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        if (!enabled) {
+            RTXMod.LOGGER.info("Driver exposes no program binary formats, shader cache disabled");
+            return;
+        }
+        
+        try {
+            Files.createDirectories(cacheDirectory);
+            pruneStaleEntries();
+        } catch (IOException e) {
+            RTXMod.LOGGER.warn("Shader cache directory {} unavailable, cache disabled: {}", cacheDirectory, e.getMessage());
+            enabled = false;
+        }
+    }
+    
+    public String computeKey(String programName, String... stageSources) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, environmentKey);
+            update(digest, programName);
+            for (String source : stageSources) {
+                update(digest, source);
+            }
+            
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        // Length prefix keeps ("ab", "c") and ("a", "bc") apart
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+    
+    /**
+     * Loads a cached binary into the program, returns false if there is none or the driver rejects it
+     */
+    public boolean load(String key, RTXShaderProgram program, boolean compute) {
+        if (!enabled) return false;
+        
+        Path file = entryPath(key);
+        if (!Files.isRegularFile(file)) {
+            missCount++;
+            return false;
+        }
+        
+        ByteBuffer binary = null;
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream input = new DataInputStream(stream)) {
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException("not a shader cache entry");
+            }
+            int binaryFormat = input.readInt();
+            int length = input.readInt();
+            
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            binary = MemoryUtil.memAlloc(length);
+            binary.put(bytes).flip();
+            
+            if (!program.loadBinary(binaryFormat, binary, compute)) {
+                // Driver changed without changing its version string, or the entry is corrupt
+                RTXMod.LOGGER.debug("Driver rejected cached shader binary {}, recompiling", key);
+                Files.deleteIfExists(file);
+                missCount++;
+                return false;
+            }
+            
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hitCount++;
+            return true;
+        
+        } catch (IOException e) {
+            RTXMod.LOGGER.debug("Failed to read shader cache entry {}: {}", key, e.getMessage());
+            missCount++;
+            return false;
+        } finally {
+            if (binary != null) {
+                MemoryUtil.memFree(binary);
+            }
+        }
+    }
+    
+    public void store(String key, RTXShaderProgram program) {
+        if (!enabled) return;
+        
+        int length = gl.getProgrami(program.getProgramId(), GL46.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) return;
+        
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try {
+            int[] binaryFormat = new int[1];
+            gl.getProgramBinary(program.getProgramId(), binaryFormat, binary);
+            
+            byte[] bytes = new byte[binary.remaining()];
+            binary.get(bytes);
+            
+            // Write to a temporary file first so a crash never leaves a truncated entry behind
+            Path file = entryPath(key);
+            Path temporary = Files.createTempFile(cacheDirectory, key, ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream output = new DataOutputStream(stream)) {
+                output.writeInt(FILE_MAGIC);
+                output.writeInt(FILE_VERSION);
+                output.writeInt(binaryFormat[0]);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        } catch (IOException e) {
+            RTXMod.LOGGER.warn("Failed to write shader cache entry {}: {}", key, e.getMessage());
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+    
+    private void pruneStaleEntries() throws IOException {
+        long cutoff = System.currentTimeMillis() - MAX_ENTRY_AGE_MILLIS;
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            files.filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.endsWith(FILE_EXTENSION) || name.endsWith(".tmp");
+                })
+                .filter(file -> {
+                    try {
+                        return Files.getLastModifiedTime(file).toMillis() < cutoff;
+                    } catch (IOException e) {
+                        return false;
+                    }
+                })
+                .forEach(file -> {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        RTXMod.LOGGER.debug("Failed to delete stale shader cache entry {}", file);
+                    }
+                });
+        }
+    }
+    
+    private Path entryPath(String key) {
+        return cacheDirectory.resolve(key + FILE_EXTENSION);
+    }
+    
+    public void logStatistics() {
+        if (!enabled) return;
+        RTXMod.LOGGER.info("Shader cache: {} hits, {} misses", hitCount, missCount);
+    }
+    
+    // Getters
+    public boolean isEnabled() { return enabled; }
+    public int getHitCount() { return hitCount; }
+    public int getMissCount() { return missCount; }
+}
@@ -0,0 +1,128 @@
+package com.rtxmod.rendering.shaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every shader source packed into one resource by the packShaders build task, with a SHA-256 per file
+ * Layout: magic, version, entry count, index of (path, offset, length, hash), then the concatenated sources
+ */
+public class ShaderBundle {
+    
+    public static final String RESOURCE_PATH = "/assets/rtx-mod/shaders.bin";
+    
+    // Must match packShaders in build.gradle
+    private static final int FILE_MAGIC = 0x52545853; // "RTXS"
+    private static final int FILE_VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+    
+    private final Map<String, String> sources;
+    private final Map<String, String> hashes;
+    
+    private ShaderBundle(Map<String, String> sources, Map<String, String> hashes) {
+        this.sources = sources;
+        this.hashes = hashes;
+    }
+    
+    /**
+     * Reads and verifies the bundle in one pass, the jar ships no loose shader files so a missing bundle is an error
+     */
+    public static ShaderBundle load(String shaderRoot) throws IOException {
+        byte[] data;
+        try (InputStream stream = ShaderBundle.class.getResourceAsStream(RESOURCE_PATH)) {
+            if (stream == null) {
+                throw new IOException("Shader bundle " + RESOURCE_PATH + " is missing, the jar was built without packShaders");
+            }
+            data = stream.readAllBytes();
+        }
+        
+        try {
+            return read(data, shaderRoot.endsWith("/") ? shaderRoot : shaderRoot + "/");
+        } catch (IOException e) {
+            throw new IOException("Corrupt shader bundle " + RESOURCE_PATH + ": " + e.getMessage(), e);
+        }
+    }
+    
+    private static ShaderBundle read(byte[] data, String shaderRoot) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+        if (input.readInt() != FILE_MAGIC) {
+            throw new IOException("not a shader bundle");
+        }
+        int version = input.readInt();
+        if (version != FILE_VERSION) {
+            throw new IOException("unsupported bundle version " + version);
+        }
+        
+        int entryCount = input.readInt();
+        String[] paths = new String[entryCount];
+        int[] offsets = new int[entryCount];
+        int[] lengths = new int[entryCount];
+        byte[] hash = new byte[HASH_LENGTH];
+        
+        Map<String, String> hashes = new HashMap<>(entryCount * 2);
+        for (int i = 0; i < entryCount; i++) {
+            // Paths are stored relative to the shader root, lookups use full resource paths
+            paths[i] = shaderRoot + input.readUTF();
+            offsets[i] = input.readInt();
+            lengths[i] = input.readInt();
+            input.readFully(hash);
+            hashes.put(paths[i], toHex(hash));
+        }
+        
+        // Sources follow the index back to back, offsets are relative to the first one
+        int dataStart = data.length - input.available();
+        Map<String, String> sources = new HashMap<>(entryCount * 2);
+        MessageDigest digest = sha256();
+        for (int i = 0; i < entryCount; i++) {
+            if (offsets[i] < 0 || lengths[i] < 0 || dataStart + offsets[i] + lengths[i] > data.length) {
+                throw new IOException("truncated entry " + paths[i]);
+            }
+            
+            // Every entry is checked against its build-time hash, a damaged byte fails the whole bundle
+            digest.update(data, dataStart + offsets[i], lengths[i]);
+            if (!toHex(digest.digest()).equals(hashes.get(paths[i]))) {
+                throw new IOException("corrupt entry " + paths[i]);
+            }
+            sources.put(paths[i], new String(data, dataStart + offsets[i], lengths[i], StandardCharsets.UTF_8));
+        }
+        
+        return new ShaderBundle(sources, hashes);
+    }
+    
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    // Source with LF line endings, exactly as the loose-file loader would produce it, or null
+    public String getSource(String resourcePath) {
+        return sources.get(resourcePath);
+    }
+    
+    // SHA-256 of the source computed at build time, or null
+    public String getHash(String resourcePath) {
+        return hashes.get(resourcePath);
+    }
+    
+    public int size() {
+        return sources.size();
+    }
+}
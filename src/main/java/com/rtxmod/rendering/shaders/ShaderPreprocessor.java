@@ -0,0 +1,146 @@
+package com.rtxmod.rendering.shaders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal GLSL preprocessor: resolves #include and injects #defines after #version
+ * Everything else is left to the driver's own preprocessor
+ */
+public class ShaderPreprocessor {
+    
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^\\s*#\\s*include\\s+[\"<]([^\">]+)[\">]");
+    private static final Pattern VERSION_PATTERN = Pattern.compile("^\\s*#\\s*version\\b");
+    
+    @FunctionalInterface
+    public interface SourceLoader {
+        String load(String path) throws IOException;
+    }
+    
+    /**
+     * Expanded source plus every file it was built from, in #line source-string order
+     */
+    public static final class Result {
+        private final String source;
+        private final List<String> files;
+        
+        Result(String source, List<String> files) {
+            this.source = source;
+            this.files = Collections.unmodifiableList(files);
+        }
+        
+        public String getSource() { return source; }
+        public List<String> getFiles() { return files; }
+        
+        // Maps the source-string number in a driver error back to a file
+        public String getFile(int sourceStringNumber) {
+            return sourceStringNumber >= 0 && sourceStringNumber < files.size() ? files.get(sourceStringNumber) : "?";
+        }
+    }
+    
+    private final String rootPath;
+    private final SourceLoader loader;
+    
+    public ShaderPreprocessor(String rootPath, SourceLoader loader) {
+        this.rootPath = rootPath.endsWith("/") ? rootPath : rootPath + "/";
+        this.loader = loader;
+    }
+    
+    public Result process(String path, Map<String, String> defines) throws IOException {
+        List<String> files = new ArrayList<>();
+        StringBuilder output = new StringBuilder();
+        
+        String source = loader.load(path);
+        files.add(path);
+        
+        boolean definesInjected = false;
+        Set<String> included = new LinkedHashSet<>();
+        included.add(path);
+        List<String> stack = new ArrayList<>();
+        stack.add(path);
+        
+        String[] lines = source.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            
+            if (!definesInjected && VERSION_PATTERN.matcher(line).find()) {
+                // #version must stay the first statement, defines go right after it
+                output.append(line).append('\n');
+                appendDefines(output, defines);
+                output.append("#line ").append(i + 2).append(" 0\n");
+                definesInjected = true;
+                continue;
+            }
+            
+            if (!appendInclude(line, path, i, 0, output, files, included, stack)) {
+                output.append(line).append('\n');
+            }
+        }
+        
+        if (!definesInjected) {
+            // No #version, let the driver default and complain
+            StringBuilder prefixed = new StringBuilder();
+            appendDefines(prefixed, defines);
+            output.insert(0, prefixed.append("#line 1 0\n"));
+        }
+        
+        return new Result(output.toString(), files);
+    }
+    
+    private boolean appendInclude(String line, String currentPath, int lineIndex, int currentFileIndex,
+                                  StringBuilder output, List<String> files, Set<String> included,
+                                  List<String> stack) throws IOException {
+        Matcher matcher = INCLUDE_PATTERN.matcher(line);
+        if (!matcher.find()) {
+            return false;
+        }
+        
+        String includePath = resolve(matcher.group(1));
+        if (stack.contains(includePath)) {
+            throw new IOException("Circular #include of " + includePath + " from " + currentPath);
+        }
+        
+        // Every library is included once per program, like #pragma once
+        if (included.add(includePath)) {
+            String source = loader.load(includePath);
+            int fileIndex = files.size();
+            files.add(includePath);
+            
+            stack.add(includePath);
+            output.append("#line 1 ").append(fileIndex).append('\n');
+            String[] lines = source.split("\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                if (!appendInclude(lines[i], includePath, i, fileIndex, output, files, included, stack)) {
+                    output.append(lines[i]).append('\n');
+                }
+            }
+            stack.remove(stack.size() - 1);
+        }
+        
+        // Resume numbering in the including file on the line after the #include
+        output.append("#line ").append(lineIndex + 2).append(' ').append(currentFileIndex).append('\n');
+        return true;
+    }
+    
+    private String resolve(String includePath) {
+        // All includes are relative to the shader root, so a library can be moved without editing its users
+        return includePath.startsWith("/") ? includePath : rootPath + includePath;
+    }
+    
+    private static void appendDefines(StringBuilder output, Map<String, String> defines) {
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            output.append("#define ").append(define.getKey());
+            if (!define.getValue().isEmpty()) {
+                output.append(' ').append(define.getValue());
+            }
+            output.append('\n');
+        }
+    }
+}
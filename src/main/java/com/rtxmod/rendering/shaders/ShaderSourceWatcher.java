@@ -0,0 +1,113 @@
+package com.rtxmod.rendering.shaders;
+
+import com.rtxmod.RTXMod;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Watches a shader source directory during development and reports edited files as resource paths
+ * Polled from the render thread, so no watcher thread is involved
+ */
+public class ShaderSourceWatcher {
+    
+    private final Path rootDirectory;
+    private final String resourceRoot;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    
+    public ShaderSourceWatcher(Path rootDirectory, String resourceRoot) throws IOException {
+        this.rootDirectory = rootDirectory.toAbsolutePath().normalize();
+        this.resourceRoot = resourceRoot.endsWith("/") ? resourceRoot : resourceRoot + "/";
+        this.watchService = FileSystems.getDefault().newWatchService();
+        
+        registerTree(this.rootDirectory);
+        RTXMod.LOGGER.info("Watching shader sources in {} ({} directories)", this.rootDirectory, watchedDirectories.size());
+    }
+    
+    private void registerTree(Path directory) throws IOException {
+        // WatchService is not recursive, every subdirectory (lib/ and friends) needs its own key
+        try (Stream<Path> paths = Files.walk(directory)) {
+            Iterator<Path> iterator = paths.filter(Files::isDirectory).iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                WatchKey key = path.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, path);
+            }
+        }
+    }
+    
+    /**
+     * Adds the resource path of every file changed since the last poll, never blocks
+     * Returns true if the platform dropped events, in which case anything may have changed
+     */
+    public boolean poll(Set<String> changedPaths) {
+        boolean overflow = false;
+        
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path directory = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                if (directory == null) continue;
+                
+                Path path = directory.resolve((Path) event.context());
+                if (Files.isDirectory(path)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        registerNewDirectory(path);
+                    }
+                    continue;
+                }
+                changedPaths.add(toResourcePath(path));
+            }
+            
+            if (!key.reset()) {
+                // Directory was deleted
+                watchedDirectories.remove(key);
+            }
+        }
+        
+        return overflow;
+    }
+    
+    private void registerNewDirectory(Path directory) {
+        try {
+            registerTree(directory);
+        } catch (IOException e) {
+            RTXMod.LOGGER.warn("Failed to watch new shader directory {}: {}", directory, e.getMessage());
+        }
+    }
+    
+    private String toResourcePath(Path file) {
+        String relative = rootDirectory.relativize(file).toString().replace('\\', '/');
+        return resourceRoot + relative;
+    }
+    
+    public Path getRootDirectory() {
+        return rootDirectory;
+    }
+    
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            RTXMod.LOGGER.warn("Failed to close shader watcher: {}", e.getMessage());
+        }
+        watchedDirectories.clear();
+    }
+}
@@ -0,0 +1,194 @@
+package com.rtxmod.rendering.shaders;
+
+import com.rtxmod.util.GLBackend;
+import org.joml.Matrix3fc;
+import org.joml.Matrix4fc;
+import org.joml.Vector2fc;
+import org.joml.Vector3fc;
+import org.joml.Vector4fc;
+
+import java.util.Arrays;
+
+/**
+ * Pre-resolved handle to one uniform of a linked program
+ * Keeps a copy of the last uploaded value and skips the GL call when it hasn't changed
+ * Uploads go through glProgramUniform, so the program does not need to be bound
+ */
+public final class ShaderUniform {
+    
+    private final GLBackend gl;
+    private final int programId;
+    private final String name;
+    private final int location;
+    private final int type;
+    
+    // Last uploaded value, sized for the largest type we upload (mat4)
+    private final float[] floatShadow = new float[16];
+    private final float[] floatScratch = new float[16];
+    private final float[] matrix3Shadow = new float[9];
+    private final float[] matrix3Scratch = new float[9];
+    private int intShadow;
+    private float[] arrayShadow;
+    private float[] arrayScratch;
+    private int[] intArrayShadow;
+    private boolean hasValue = false;
+    
+    ShaderUniform(GLBackend gl, int programId, String name, int location, int type) {
+        this.gl = gl;
+        this.programId = programId;
+        this.name = name;
+        this.location = location;
+        this.type = type;
+    }
+    
+    // Stand-in for names the program doesn't use, every set is a no-op
+    static ShaderUniform inactive(GLBackend gl, int programId, String name) {
+        return new ShaderUniform(gl, programId, name, -1, 0);
+    }
+    
+    public void set(int value) {
+        if (location < 0 || (hasValue && intShadow == value)) return;
+        intShadow = value;
+        hasValue = true;
+        gl.programUniform1i(programId, location, value);
+    }
+    
+    public void set(boolean value) {
+        set(value ? 1 : 0);
+    }
+    
+    public void set(float value) {
+        if (location < 0 || (hasValue && floatShadow[0] == value)) return;
+        floatShadow[0] = value;
+        hasValue = true;
+        gl.programUniform1f(programId, location, value);
+    }
+    
+    public void set(float x, float y) {
+        if (location < 0 || (hasValue && floatShadow[0] == x && floatShadow[1] == y)) return;
+        floatShadow[0] = x;
+        floatShadow[1] = y;
+        hasValue = true;
+        gl.programUniform2f(programId, location, x, y);
+    }
+    
+    public void set(float x, float y, float z) {
+        if (location < 0 || (hasValue && floatShadow[0] == x && floatShadow[1] == y && floatShadow[2] == z)) return;
+        floatShadow[0] = x;
+        floatShadow[1] = y;
+        floatShadow[2] = z;
+        hasValue = true;
+        gl.programUniform3f(programId, location, x, y, z);
+    }
+    
+    public void set(float x, float y, float z, float w) {
+        if (location < 0 || (hasValue && floatShadow[0] == x && floatShadow[1] == y
+                && floatShadow[2] == z && floatShadow[3] == w)) return;
+        floatShadow[0] = x;
+        floatShadow[1] = y;
+        floatShadow[2] = z;
+        floatShadow[3] = w;
+        hasValue = true;
+        gl.programUniform4f(programId, location, x, y, z, w);
+    }
+    
+    public void set(Vector2fc value) {
+        set(value.x(), value.y());
+    }
+    
+    public void set(Vector3fc value) {
+        set(value.x(), value.y(), value.z());
+    }
+    
+    public void set(Vector4fc value) {
+        set(value.x(), value.y(), value.z(), value.w());
+    }
+    
+    public void set(Matrix4fc value) {
+        if (location < 0) return;
+        value.get(floatScratch);
+        if (hasValue && Arrays.equals(floatScratch, floatShadow)) return;
+        System.arraycopy(floatScratch, 0, floatShadow, 0, 16);
+        hasValue = true;
+        gl.programUniformMatrix4fv(programId, location, false, floatShadow);
+    }
+    
+    public void set(Matrix3fc value) {
+        if (location < 0) return;
+        value.get(matrix3Scratch);
+        if (hasValue && Arrays.equals(matrix3Scratch, matrix3Shadow)) return;
+        System.arraycopy(matrix3Scratch, 0, matrix3Shadow, 0, 9);
+        hasValue = true;
+        gl.programUniformMatrix3fv(programId, location, false, matrix3Shadow);
+    }
+    
+    // Arrays keep a shadow of their own, sized on first upload and again only if the length changes
+    public void set(float[] values) {
+        if (location < 0 || (hasValue && Arrays.equals(values, arrayShadow))) return;
+        ensureArrayShadow(values.length);
+        System.arraycopy(values, 0, arrayShadow, 0, values.length);
+        hasValue = true;
+        gl.programUniform1fv(programId, location, arrayShadow);
+    }
+    
+    public void set(int[] values) {
+        if (location < 0 || (hasValue && Arrays.equals(values, intArrayShadow))) return;
+        if (intArrayShadow == null || intArrayShadow.length != values.length) {
+            intArrayShadow = new int[values.length];
+        }
+        System.arraycopy(values, 0, intArrayShadow, 0, values.length);
+        hasValue = true;
+        gl.programUniform1iv(programId, location, intArrayShadow);
+    }
+    
+    public void set(Vector3fc[] values) {
+        if (location < 0) return;
+        ensureArrayShadow(values.length * 3);
+        for (int i = 0; i < values.length; i++) {
+            arrayScratch[i * 3] = values[i].x();
+            arrayScratch[i * 3 + 1] = values[i].y();
+            arrayScratch[i * 3 + 2] = values[i].z();
+        }
+        if (storeArrayScratch()) {
+            gl.programUniform3fv(programId, location, arrayShadow);
+        }
+    }
+    
+    public void set(Matrix4fc[] values) {
+        if (location < 0) return;
+        ensureArrayShadow(values.length * 16);
+        for (int i = 0; i < values.length; i++) {
+            values[i].get(arrayScratch, i * 16);
+        }
+        if (storeArrayScratch()) {
+            gl.programUniformMatrix4fv(programId, location, false, arrayShadow);
+        }
+    }
+    
+    // The GL call takes its element count from the array, so the shadow always has the exact length
+    private void ensureArrayShadow(int length) {
+        if (arrayShadow == null || arrayShadow.length != length) {
+            arrayShadow = new float[length];
+            arrayScratch = new float[length];
+            hasValue = false;
+        }
+    }
+    
+    // False if the scratch values match the last upload
+    private boolean storeArrayScratch() {
+        if (hasValue && Arrays.equals(arrayScratch, arrayShadow)) return false;
+        System.arraycopy(arrayScratch, 0, arrayShadow, 0, arrayShadow.length);
+        hasValue = true;
+        return true;
+    }
+    
+    // Forget the shadow value, e.g. after something outside this handle changed the uniform
+    public void invalidate() {
+        hasValue = false;
+    }
+    
+    public String getName() { return name; }
+    public int getLocation() { return location; }
+    public int getType() { return type; }
+    public boolean isActive() { return location >= 0; }
+}
@@ -0,0 +1,252 @@
+package com.rtxmod.rendering.tuning;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.config.RTXConfig;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.RTXCapabilities;
+import org.lwjgl.opengl.GL46;
+
+import java.util.Arrays;
+
+/**
+ * Benchmarks the quality presets on the GPU and keeps the best one that holds the target frame rate
+ * Runs on first launch and whenever the driver signature changes, one preset at a time across frames,
+ * but only while samples, bounces and scale are at their defaults or at the preset it chose last time
+ */
+public class AutoTuner {
+    
+    // Presets in ascending cost, tuning climbs until one misses the budget
+    public enum Preset {
+        LOW(1, 1, 50),
+        MEDIUM(2, 2, 75),
+        HIGH(4, 3, 100),
+        ULTRA(8, 4, 100);
+        
+        private final int samplesPerPixel;
+        private final int maxRayBounces;
+        private final int renderScale;
+        
+        Preset(int samplesPerPixel, int maxRayBounces, int renderScale) {
+            this.samplesPerPixel = samplesPerPixel;
+            this.maxRayBounces = maxRayBounces;
+            this.renderScale = renderScale;
+        }
+        
+        public void applyTo(RTXConfig config) {
+            config.setSamplesPerPixel(samplesPerPixel);
+            config.setMaxRayBounces(maxRayBounces);
+            config.setRenderScale(renderScale);
+        }
+        
+        public boolean matches(RTXConfig config) {
+            return config.getSamplesPerPixel() == samplesPerPixel && config.getMaxRayBounces() == maxRayBounces
+                && config.getRenderScale() == renderScale;
+        }
+        
+        // Null for names no preset has, e.g. an empty or hand-edited config entry
+        public static Preset parse(String name) {
+            for (Preset preset : PRESETS) {
+                if (preset.name().equals(name)) {
+                    return preset;
+                }
+            }
+            return null;
+        }
+        
+        public int getSamplesPerPixel() { return samplesPerPixel; }
+        public int getMaxRayBounces() { return maxRayBounces; }
+        public int getRenderScale() { return renderScale; }
+    }
+    
+    // values() copies the array on every call
+    private static final Preset[] PRESETS = Preset.values();
+    
+    // Frames after a preset switch that are ignored while shaders, targets and history settle
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 30;
+    
+    // Vanilla rendering needs the rest of the frame
+    private static final float RTX_FRAME_SHARE = 0.7f;
+    
+    private final GLBackend gl = GLBackend.get();
+    private final RTXConfig config;
+    private final RTXCapabilities capabilities;
+    
+    private boolean running = false;
+    private int presetIndex = 0;
+    private int warmupFramesLeft = 0;
+    private Preset bestPreset = null;
+    private final long[] samples = new long[MEASURED_FRAMES];
+    private final float[] presetTimesMs = new float[PRESETS.length];
+    private int sampleCount = 0;
+    private boolean customisedLogged = false;
+    
+    // Quality the user had before the run, put back if the run is abandoned
+    private int originalSamplesPerPixel;
+    private int originalMaxRayBounces;
+    private int originalRenderScale;
+    
+    // Timestamp pair of the frame in flight, read back once the GPU has passed it
+    private final int[] queries = new int[2];
+    private boolean frameStarted = false;
+    private boolean queryPending = false;
+    
+    public AutoTuner(RTXConfig config, RTXCapabilities capabilities) {
+        this.config = config;
+        this.capabilities = capabilities;
+    }
+    
+    public boolean isNeeded() {
+        return config.isAutoTuneEnabled() && !capabilities.getDriverSignature().equals(config.getAutoTunedDriver())
+            && !isQualityCustomised();
+    }
+    
+    // Hand-set quality is never overwritten, only defaults or what the previous run chose
+    private boolean isQualityCustomised() {
+        if (config.isQualityAtDefaults()) return false;
+        
+        Preset tuned = Preset.parse(config.getAutoTunedPreset());
+        boolean customised = tuned == null || !tuned.matches(config);
+        if (customised && !customisedLogged) {
+            customisedLogged = true;
+            RTXMod.LOGGER.info("Skipping quality auto-tune, samples, bounces or render scale were set by hand");
+        }
+        return customised;
+    }
+    
+    public void start() {
+        if (running) return;
+        
+        RTXMod.LOGGER.info("Auto-tuning quality for {} at {} FPS", capabilities.getGPURenderer(), config.getAutoTuneTargetFps());
+        gl.genQueries(queries);
+        Arrays.fill(presetTimesMs, -1.0f);
+        originalSamplesPerPixel = config.getSamplesPerPixel();
+        originalMaxRayBounces = config.getMaxRayBounces();
+        originalRenderScale = config.getRenderScale();
+        bestPreset = null;
+        presetIndex = 0;
+        running = true;
+        beginPreset();
+    }
+    
+    private void beginPreset() {
+        // Config listeners rebuild shader variants and targets for the new settings
+        PRESETS[presetIndex].applyTo(config);
+        warmupFramesLeft = WARMUP_FRAMES;
+        sampleCount = 0;
+        frameStarted = false;
+        queryPending = false;
+    }
+    
+    /**
+     * Call before the mod's passes; settling is true while shaders or targets for the preset are not in place yet
+     */
+    public void beginFrame(boolean settling) {
+        if (!running) return;
+        
+        collectPendingSample();
+        if (settling) {
+            warmupFramesLeft = WARMUP_FRAMES;
+            return;
+        }
+        if (warmupFramesLeft > 0) {
+            warmupFramesLeft--;
+            return;
+        }
+        
+        // Never stall on the GPU, skip frames until the previous pair is back
+        if (!queryPending) {
+            gl.queryCounter(queries[0], GL46.GL_TIMESTAMP);
+            frameStarted = true;
+        }
+    }
+    
+    public void endFrame() {
+        if (!running || !frameStarted) return;
+        
+        gl.queryCounter(queries[1], GL46.GL_TIMESTAMP);
+        frameStarted = false;
+        queryPending = true;
+    }
+    
+    private void collectPendingSample() {
+        if (!queryPending) return;
+        if (gl.getQueryObjecti(queries[1], GL46.GL_QUERY_RESULT_AVAILABLE) == GL46.GL_FALSE) return;
+        
+        long start = gl.getQueryObjectui64(queries[0], GL46.GL_QUERY_RESULT);
+        long end = gl.getQueryObjectui64(queries[1], GL46.GL_QUERY_RESULT);
+        queryPending = false;
+        
+        samples[sampleCount++] = end - start;
+        if (sampleCount == MEASURED_FRAMES) {
+            finishPreset();
+        }
+    }
+    
+    private void finishPreset() {
+        // Median, a hitch during loading shouldn't condemn a preset
+        Arrays.sort(samples);
+        float timeMs = samples[MEASURED_FRAMES / 2] / 1_000_000.0f;
+        float budgetMs = 1000.0f / config.getAutoTuneTargetFps() * RTX_FRAME_SHARE;
+        
+        Preset preset = PRESETS[presetIndex];
+        presetTimesMs[presetIndex] = timeMs;
+        RTXMod.LOGGER.info("Auto-tune {}: {} ms (budget {} ms)", preset, String.format("%.2f", timeMs), String.format("%.2f", budgetMs));
+        
+        boolean fits = timeMs <= budgetMs;
+        if (fits) {
+            bestPreset = preset;
+        }
+        
+        // Costlier presets won't fit either once one misses
+        if (fits && presetIndex + 1 < PRESETS.length) {
+            presetIndex++;
+            beginPreset();
+        } else {
+            finish();
+        }
+    }
+    
+    private void finish() {
+        Preset chosen = bestPreset != null ? bestPreset : Preset.LOW;
+        chosen.applyTo(config);
+        config.setAutoTunedDriver(capabilities.getDriverSignature());
+        config.setAutoTunedPreset(chosen.name());
+        config.saveConfig();
+        
+        RTXMod.LOGGER.info("Auto-tune chose {} ({} spp, {} bounces, {}% scale){}", chosen,
+            chosen.getSamplesPerPixel(), chosen.getMaxRayBounces(), chosen.getRenderScale(),
+            bestPreset == null ? ", even the lowest preset misses the target" : "");
+        release();
+    }
+    
+    // Abandons a run, e.g. on cleanup; the user's quality comes back and it starts over next launch
+    public void stop() {
+        if (!running) return;
+        
+        config.setSamplesPerPixel(originalSamplesPerPixel);
+        config.setMaxRayBounces(originalMaxRayBounces);
+        config.setRenderScale(originalRenderScale);
+        release();
+    }
+    
+    private void release() {
+        gl.deleteQueries(queries);
+        frameStarted = false;
+        queryPending = false;
+        running = false;
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    public Preset getBestPreset() {
+        return bestPreset;
+    }
+    
+    // Median RTX frame time measured for a preset, -1 if it wasn't reached
+    public float getPresetTimeMs(Preset preset) {
+        return presetTimesMs[preset.ordinal()];
+    }
+}
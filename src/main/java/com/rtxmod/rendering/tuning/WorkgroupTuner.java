@@ -0,0 +1,391 @@
+package com.rtxmod.rendering.tuning;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.rtxmod.RTXMod;
+import com.rtxmod.rendering.shaders.RTXShaderManager;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.RTXCapabilities;
+import org.lwjgl.opengl.GL46;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Times every per-pixel kernel at several local sizes and keeps the fastest one per kernel and driver
+ * Results are stored by driver signature, later launches compile the chosen sizes straight away
+ * Only kernels that were actually timed are stored, the others are tuned the first time they run
+ */
+public class WorkgroupTuner implements RTXShaderManager.DispatchTimer {
+    
+    public enum LocalSize {
+        SIZE_8X8(8, 8),
+        SIZE_16X8(16, 8),
+        SIZE_16X16(16, 16),
+        SIZE_32X8(32, 8);
+        
+        private final int x;
+        private final int y;
+        
+        LocalSize(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+        
+        public int getX() { return x; }
+        public int getY() { return y; }
+        
+        @Override
+        public String toString() {
+            return x + "x" + y;
+        }
+        
+        public static LocalSize parse(String value) {
+            for (LocalSize size : values()) {
+                if (size.toString().equals(value)) {
+                    return size;
+                }
+            }
+            return null;
+        }
+    }
+    
+    // Kernels dispatched through RTXShaderManager.dispatch2D, all of them include lib/workgroup.glsl
+    private static final String[] KERNELS = {
+        RTXShaderManager.RAY_TRACING_PROGRAM,
+        RTXShaderManager.POST_PROCESS_PROGRAM,
+        RTXShaderManager.DENOISING_PROGRAM,
+        RTXShaderManager.UPSCALING_PROGRAM,
+        RTXShaderManager.LUMINANCE_HISTOGRAM_PROGRAM
+    };
+    
+    private static final String FILE_NAME = "workgroup_sizes.json";
+    private static final Type RESULTS_TYPE = new TypeToken<Map<String, Map<String, String>>>() {}.getType();
+    
+    private static final int WARMUP_FRAMES = 5;
+    private static final int MEASURED_FRAMES = 20;
+    
+    // Timed dispatches per frame, the denoiser alone issues up to nine
+    private static final int MAX_TIMED_DISPATCHES = 32;
+    
+    private final GLBackend gl = GLBackend.get();
+    private final RTXShaderManager shaderManager;
+    private final RTXCapabilities capabilities;
+    private final Path resultsFile;
+    
+    private boolean storedSizesFound = false;
+    private boolean running = false;
+    
+    // Kernels with a measured size on this driver, and whether one without has been dispatched since
+    private final boolean[] kernelTuned = new boolean[KERNELS.length];
+    private boolean untunedKernelDispatched = false;
+    private int sizeIndex = 0;
+    private int warmupFramesLeft = 0;
+    private int measuredFrames = 0;
+    
+    // Per kernel: frame totals of the current size, then the median of every size, -1 if never dispatched
+    private final long[][] samples = new long[KERNELS.length][MEASURED_FRAMES];
+    private final int[] sampleCounts = new int[KERNELS.length];
+    private final float[][] kernelTimesMs = new float[KERNELS.length][LocalSize.values().length];
+    
+    // Timestamp pair per dispatch of the frame in flight, read back once the GPU has passed it
+    private final int[] queries = new int[MAX_TIMED_DISPATCHES * 2];
+    private final int[] queryKernels = new int[MAX_TIMED_DISPATCHES];
+    private final long[] frameTotals = new long[KERNELS.length];
+    private int timedDispatches = 0;
+    private int openKernel = -1;
+    private boolean frameStarted = false;
+    private boolean queryPending = false;
+    
+    public WorkgroupTuner(RTXShaderManager shaderManager, RTXCapabilities capabilities, Path cacheDirectory) {
+        this.shaderManager = shaderManager;
+        this.capabilities = capabilities;
+        this.resultsFile = cacheDirectory.resolve(FILE_NAME);
+    }
+    
+    /**
+     * Sets the local sizes measured earlier on this driver, call before the shader manager builds
+     */
+    public void applyStoredSizes() {
+        Map<String, String> sizes = loadResults().get(capabilities.getDriverSignature());
+        storedSizesFound = sizes != null;
+        if (sizes == null) return;
+        
+        for (int kernel = 0; kernel < KERNELS.length; kernel++) {
+            LocalSize size = LocalSize.parse(sizes.get(KERNELS[kernel]));
+            kernelTuned[kernel] = size != null;
+            applySize(KERNELS[kernel], size);
+        }
+        watchUntunedKernels();
+        RTXMod.LOGGER.info("Using tuned workgroup sizes {}", sizes);
+    }
+    
+    // Nothing stored for this driver yet, or a kernel without a measured size has started running
+    public boolean isNeeded() {
+        return !storedSizesFound || untunedKernelDispatched;
+    }
+    
+    // Outside a run the dispatch hook only notices kernels that still need a size
+    private void watchUntunedKernels() {
+        boolean anyUntuned = false;
+        for (boolean tuned : kernelTuned) {
+            anyUntuned |= !tuned;
+        }
+        shaderManager.setDispatchTimer(anyUntuned ? this : null);
+    }
+    
+    // No define falls back to the default in lib/workgroup.glsl
+    private void applySize(String kernel, LocalSize size) {
+        shaderManager.setProgramDefine(kernel, "RTX_LOCAL_SIZE_X", size != null ? Integer.toString(size.getX()) : null);
+        shaderManager.setProgramDefine(kernel, "RTX_LOCAL_SIZE_Y", size != null ? Integer.toString(size.getY()) : null);
+    }
+    
+    public void start() {
+        if (running) return;
+        
+        RTXMod.LOGGER.info("Tuning compute workgroup sizes for {}", capabilities.getGPURenderer());
+        gl.genQueries(queries);
+        for (float[] times : kernelTimesMs) {
+            Arrays.fill(times, -1.0f);
+        }
+        shaderManager.setDispatchTimer(this);
+        untunedKernelDispatched = false;
+        sizeIndex = 0;
+        running = true;
+        beginSize();
+    }
+    
+    private void beginSize() {
+        // Every kernel still without a size is compiled at the same candidate, each is timed on its own dispatches
+        LocalSize size = LocalSize.values()[sizeIndex];
+        for (int kernel = 0; kernel < KERNELS.length; kernel++) {
+            if (!kernelTuned[kernel]) {
+                applySize(KERNELS[kernel], size);
+            }
+        }
+        shaderManager.rebuildVariants();
+        
+        warmupFramesLeft = WARMUP_FRAMES;
+        measuredFrames = 0;
+        Arrays.fill(sampleCounts, 0);
+        frameStarted = false;
+        queryPending = false;
+    }
+    
+    /**
+     * Call before the mod's passes; settling is true while the candidate's variants are still building
+     */
+    public void beginFrame(boolean settling) {
+        if (!running) return;
+        
+        collectPendingSample();
+        if (settling) {
+            warmupFramesLeft = WARMUP_FRAMES;
+            return;
+        }
+        if (warmupFramesLeft > 0) {
+            warmupFramesLeft--;
+            return;
+        }
+        
+        // Never stall on the GPU, skip frames until the previous frame's queries are back
+        if (!queryPending) {
+            timedDispatches = 0;
+            openKernel = -1;
+            frameStarted = true;
+        }
+    }
+    
+    public void endFrame() {
+        if (!running || !frameStarted) return;
+        
+        frameStarted = false;
+        queryPending = timedDispatches > 0;
+    }
+    
+    @Override
+    public void beforeDispatch(String programName) {
+        if (!running) {
+            int kernel = indexOf(programName);
+            untunedKernelDispatched |= kernel >= 0 && !kernelTuned[kernel];
+            return;
+        }
+        if (!frameStarted || timedDispatches == MAX_TIMED_DISPATCHES) return;
+        
+        // Kernels measured in an earlier run keep their size and aren't timed again
+        openKernel = indexOf(programName);
+        if (openKernel >= 0 && kernelTuned[openKernel]) {
+            openKernel = -1;
+        }
+        if (openKernel >= 0) {
+            gl.queryCounter(queries[timedDispatches * 2], GL46.GL_TIMESTAMP);
+        }
+    }
+    
+    @Override
+    public void afterDispatch(String programName) {
+        if (openKernel < 0) return;
+        
+        gl.queryCounter(queries[timedDispatches * 2 + 1], GL46.GL_TIMESTAMP);
+        queryKernels[timedDispatches++] = openKernel;
+        openKernel = -1;
+    }
+    
+    private static int indexOf(String programName) {
+        for (int i = 0; i < KERNELS.length; i++) {
+            if (KERNELS[i].equals(programName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void collectPendingSample() {
+        if (!queryPending) return;
+        int lastQuery = queries[timedDispatches * 2 - 1];
+        if (gl.getQueryObjecti(lastQuery, GL46.GL_QUERY_RESULT_AVAILABLE) == GL46.GL_FALSE) return;
+        
+        // Kernels dispatched several times per frame are timed as their sum
+        Arrays.fill(frameTotals, 0);
+        for (int i = 0; i < timedDispatches; i++) {
+            long start = gl.getQueryObjectui64(queries[i * 2], GL46.GL_QUERY_RESULT);
+            long end = gl.getQueryObjectui64(queries[i * 2 + 1], GL46.GL_QUERY_RESULT);
+            frameTotals[queryKernels[i]] += end - start;
+        }
+        queryPending = false;
+        
+        for (int kernel = 0; kernel < KERNELS.length; kernel++) {
+            if (frameTotals[kernel] > 0 && sampleCounts[kernel] < MEASURED_FRAMES) {
+                samples[kernel][sampleCounts[kernel]++] = frameTotals[kernel];
+            }
+        }
+        
+        if (++measuredFrames == MEASURED_FRAMES) {
+            finishSize();
+        }
+    }
+    
+    private void finishSize() {
+        LocalSize size = LocalSize.values()[sizeIndex];
+        StringBuilder summary = new StringBuilder();
+        for (int kernel = 0; kernel < KERNELS.length; kernel++) {
+            int count = sampleCounts[kernel];
+            if (count == 0) continue;
+            
+            // Median, a hitch shouldn't condemn a size
+            Arrays.sort(samples[kernel], 0, count);
+            kernelTimesMs[kernel][sizeIndex] = samples[kernel][count / 2] / 1_000_000.0f;
+            summary.append(' ').append(KERNELS[kernel]).append('=')
+                .append(String.format("%.3f", kernelTimesMs[kernel][sizeIndex])).append("ms");
+        }
+        RTXMod.LOGGER.info("Workgroup size {}:{}", size, summary);
+        
+        if (sizeIndex + 1 < LocalSize.values().length) {
+            sizeIndex++;
+            beginSize();
+        } else {
+            finish();
+        }
+    }
+    
+    private void finish() {
+        Map<String, Map<String, String>> results = loadResults();
+        Map<String, String> chosen = new TreeMap<>();
+        Map<String, String> stored = results.get(capabilities.getDriverSignature());
+        if (stored != null) {
+            chosen.putAll(stored);
+        }
+        
+        for (int kernel = 0; kernel < KERNELS.length; kernel++) {
+            if (kernelTuned[kernel]) continue;
+            
+            LocalSize best = null;
+            float bestTime = Float.MAX_VALUE;
+            for (LocalSize size : LocalSize.values()) {
+                float time = kernelTimesMs[kernel][size.ordinal()];
+                if (time >= 0.0f && time < bestTime) {
+                    best = size;
+                    bestTime = time;
+                }
+            }
+            
+            // Kernels that never ran during the run keep the default for now and aren't stored
+            applySize(KERNELS[kernel], best);
+            if (best != null) {
+                chosen.put(KERNELS[kernel], best.toString());
+                kernelTuned[kernel] = true;
+            }
+        }
+        shaderManager.rebuildVariants();
+        
+        results.put(capabilities.getDriverSignature(), chosen);
+        saveResults(results);
+        storedSizesFound = true;
+        
+        RTXMod.LOGGER.info("Workgroup tuning chose {}", chosen);
+        stop();
+    }
+    
+    // Ends a run, e.g. on cleanup; kernels left without a size are tuned again once they run
+    public void stop() {
+        if (!running) return;
+        
+        gl.deleteQueries(queries);
+        frameStarted = false;
+        queryPending = false;
+        running = false;
+        watchUntunedKernels();
+    }
+    
+    private Map<String, Map<String, String>> loadResults() {
+        if (!Files.isRegularFile(resultsFile)) {
+            return new TreeMap<>();
+        }
+        
+        try (Reader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+            Map<String, Map<String, String>> results = new GsonBuilder().create().fromJson(reader, RESULTS_TYPE);
+            return results != null ? new TreeMap<>(results) : new TreeMap<>();
+        } catch (IOException | JsonParseException e) {
+            RTXMod.LOGGER.warn("Failed to read workgroup sizes from {}, tuning again: {}", resultsFile, e.getMessage());
+            return new TreeMap<>();
+        }
+    }
+    
+    private void saveResults(Map<String, Map<String, String>> results) {
+        Path tempFile = resultsFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(resultsFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(results, RESULTS_TYPE, writer);
+            }
+            try {
+                Files.move(tempFile, resultsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, resultsFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            RTXMod.LOGGER.error("Failed to save workgroup sizes to {}: ", resultsFile, e);
+        }
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    // Median time of a kernel's dispatches per frame at a size, -1 if it wasn't measured
+    public float getKernelTimeMs(String kernel, LocalSize size) {
+        int index = indexOf(kernel);
+        return index >= 0 ? kernelTimesMs[index][size.ordinal()] : -1.0f;
+    }
+}
@@ -0,0 +1,120 @@
+package com.rtxmod.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thin facade over every GL call the renderer makes, so its CPU-side frame logic also runs without a context
+ * Calls go straight to LWJGL unless a test installs another backend before the renderer is created
+ */
+public abstract class GLBackend {
+    
+    private static GLBackend current = new LwjglGLBackend();
+    
+    public static GLBackend get() {
+        return current;
+    }
+    
+    // Objects keep the backend they were created with, null restores LWJGL
+    public static void set(GLBackend backend) {
+        current = backend != null ? backend : new LwjglGLBackend();
+    }
+    
+    // Context queries
+    public abstract String getString(int name);
+    public abstract String getStringi(int name, int index);
+    public abstract int getInteger(int pname);
+    public abstract void getIntegerv(int pname, int[] params);
+    
+    // glMaxShaderCompilerThreads through KHR or ARB_parallel_shader_compile, false if the driver has neither
+    public abstract boolean maxShaderCompilerThreads(int count);
+    
+    // Binding state
+    public abstract void useProgram(int program);
+    public abstract void bindTextureUnit(int unit, int texture);
+    public abstract void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format);
+    public abstract void bindBuffer(int target, int buffer);
+    public abstract void bindBufferBase(int target, int index, int buffer);
+    public abstract void bindFramebuffer(int target, int framebuffer);
+    public abstract void viewport(int x, int y, int width, int height);
+    
+    // Uniform uploads, the program does not need to be bound
+    public abstract void programUniform1i(int program, int location, int value);
+    public abstract void programUniform1f(int program, int location, float value);
+    public abstract void programUniform2f(int program, int location, float x, float y);
+    public abstract void programUniform3f(int program, int location, float x, float y, float z);
+    public abstract void programUniform4f(int program, int location, float x, float y, float z, float w);
+    public abstract void programUniform1iv(int program, int location, int[] values);
+    public abstract void programUniform1fv(int program, int location, float[] values);
+    public abstract void programUniform3fv(int program, int location, float[] values);
+    public abstract void programUniformMatrix3fv(int program, int location, boolean transpose, float[] values);
+    public abstract void programUniformMatrix4fv(int program, int location, boolean transpose, float[] values);
+    
+    // Compute and copies
+    public abstract void dispatchCompute(int groupsX, int groupsY, int groupsZ);
+    public abstract void memoryBarrier(int barriers);
+    public abstract void copyImageSubData(int srcName, int srcTarget, int srcLevel, int srcX, int srcY, int srcZ,
+                                          int dstName, int dstTarget, int dstLevel, int dstX, int dstY, int dstZ,
+                                          int width, int height, int depth);
+    
+    // Textures
+    public abstract int createTextures(int target);
+    public abstract void textureStorage2D(int texture, int levels, int internalFormat, int width, int height);
+    public abstract void textureParameteri(int texture, int pname, int param);
+    public abstract void clearTexImage(int texture, int level, int format, int type, float[] data);
+    public abstract void clearTexImage(int texture, int level, int format, int type, int[] data);
+    public abstract void getTextureImage(int texture, int level, int format, int type, int bufferSize, long pixelsOffset);
+    public abstract void deleteTextures(int texture);
+    
+    // Frame buffers
+    public abstract int genFramebuffers();
+    public abstract void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level);
+    public abstract void drawBuffers(int[] buffers);
+    public abstract int checkFramebufferStatus(int target);
+    public abstract void clearBufferfv(int buffer, int drawBuffer, float[] value);
+    public abstract void blitNamedFramebuffer(int readFramebuffer, int drawFramebuffer,
+                                              int srcX0, int srcY0, int srcX1, int srcY1,
+                                              int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter);
+    public abstract void deleteFramebuffers(int framebuffer);
+    public abstract void deleteRenderbuffers(int renderbuffer);
+    
+    // Buffers and syncs
+    public abstract int genBuffers();
+    public abstract void bufferData(int target, long size, int usage);
+    public abstract void bufferData(int target, int[] data, int usage);
+    public abstract void bufferData(int target, float[] data, int usage);
+    public abstract ByteBuffer mapBufferRange(int target, long offset, long length, int access);
+    public abstract boolean unmapBuffer(int target);
+    public abstract void deleteBuffers(int buffer);
+    public abstract long fenceSync(int condition, int flags);
+    public abstract int clientWaitSync(long sync, int flags, long timeout);
+    public abstract void deleteSync(long sync);
+    
+    // Queries
+    public abstract void genQueries(int[] queries);
+    public abstract void queryCounter(int query, int target);
+    public abstract int getQueryObjecti(int query, int pname);
+    public abstract long getQueryObjectui64(int query, int pname);
+    public abstract void deleteQueries(int[] queries);
+    
+    // Shaders and programs
+    public abstract int createShader(int type);
+    public abstract void shaderSource(int shader, CharSequence source);
+    public abstract void compileShader(int shader);
+    public abstract int getShaderi(int shader, int pname);
+    public abstract String getShaderInfoLog(int shader);
+    public abstract void deleteShader(int shader);
+    public abstract int createProgram();
+    public abstract void attachShader(int program, int shader);
+    public abstract void detachShader(int program, int shader);
+    public abstract void programParameteri(int program, int pname, int value);
+    public abstract void linkProgram(int program);
+    public abstract void validateProgram(int program);
+    public abstract int getProgrami(int program, int pname);
+    public abstract void getProgramiv(int program, int pname, int[] params);
+    public abstract String getProgramInfoLog(int program);
+    public abstract String getActiveUniform(int program, int index, int[] size, int[] type);
+    public abstract int getUniformLocation(int program, CharSequence name);
+    public abstract void programBinary(int program, int binaryFormat, ByteBuffer binary);
+    public abstract void getProgramBinary(int program, int[] binaryFormat, ByteBuffer binary);
+    public abstract void deleteProgram(int program);
+}
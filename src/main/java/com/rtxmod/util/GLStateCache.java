@@ -0,0 +1,116 @@
+package com.rtxmod.util;
+
+import java.util.Arrays;
+
+/**
+ * Shadow of the GL binding state the mod touches, skips binds that would not change anything
+ * Vanilla rendering changes state between our frames, so everything is forgotten at frame start
+ */
+public final class GLStateCache {
+    
+    private static final int MAX_TEXTURE_UNITS = 32;
+    private static final int MAX_IMAGE_UNITS = 8;
+    
+    // -1 marks state we don't know, the next request always reaches the driver
+    private static final int UNKNOWN = -1;
+    
+    private static int currentProgram = UNKNOWN;
+    private static final int[] boundTextures = new int[MAX_TEXTURE_UNITS];
+    private static final int[] boundImages = new int[MAX_IMAGE_UNITS];
+    private static final int[] imageAccess = new int[MAX_IMAGE_UNITS];
+    private static final int[] imageFormats = new int[MAX_IMAGE_UNITS];
+    
+    // Counters for the current frame
+    private static int issuedCalls = 0;
+    private static int skippedCalls = 0;
+    
+    static {
+        invalidate();
+    }
+    
+    private GLStateCache() {
+    }
+    
+    public static void beginFrame() {
+        invalidate();
+        issuedCalls = 0;
+        skippedCalls = 0;
+    }
+    
+    // Programs are left bound between passes, vanilla expects none once we are done
+    public static void endFrame() {
+        if (currentProgram != 0) {
+            GLBackend.get().useProgram(0);
+        }
+        invalidate();
+    }
+    
+    public static void invalidate() {
+        currentProgram = UNKNOWN;
+        Arrays.fill(boundTextures, UNKNOWN);
+        Arrays.fill(boundImages, UNKNOWN);
+    }
+    
+    public static void useProgram(int programId) {
+        if (currentProgram == programId) {
+            skippedCalls++;
+            return;
+        }
+        GLBackend.get().useProgram(programId);
+        currentProgram = programId;
+        issuedCalls++;
+    }
+    
+    // Binds to the unit without touching the active texture selector
+    public static void bindTexture(int unit, int textureId) {
+        if (unit < MAX_TEXTURE_UNITS && boundTextures[unit] == textureId) {
+            skippedCalls++;
+            return;
+        }
+        GLBackend.get().bindTextureUnit(unit, textureId);
+        if (unit < MAX_TEXTURE_UNITS) {
+            boundTextures[unit] = textureId;
+        }
+        issuedCalls++;
+    }
+    
+    public static void bindImageTexture(int unit, int textureId, int access, int format) {
+        if (unit < MAX_IMAGE_UNITS && boundImages[unit] == textureId
+                && imageAccess[unit] == access && imageFormats[unit] == format) {
+            skippedCalls++;
+            return;
+        }
+        GLBackend.get().bindImageTexture(unit, textureId, 0, false, 0, access, format);
+        if (unit < MAX_IMAGE_UNITS) {
+            boundImages[unit] = textureId;
+            imageAccess[unit] = access;
+            imageFormats[unit] = format;
+        }
+        issuedCalls++;
+    }
+    
+    // Deleted names can be handed out again, so nothing may keep matching them
+    public static void onProgramDeleted(int programId) {
+        if (currentProgram == programId) {
+            GLBackend.get().useProgram(0);
+            currentProgram = 0;
+        }
+    }
+    
+    public static void onTextureDeleted(int textureId) {
+        for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+            if (boundTextures[unit] == textureId) {
+                boundTextures[unit] = UNKNOWN;
+            }
+        }
+        for (int unit = 0; unit < MAX_IMAGE_UNITS; unit++) {
+            if (boundImages[unit] == textureId) {
+                boundImages[unit] = UNKNOWN;
+            }
+        }
+    }
+    
+    // Statistics for the current frame
+    public static int getIssuedCalls() { return issuedCalls; }
+    public static int getSkippedCalls() { return skippedCalls; }
+}
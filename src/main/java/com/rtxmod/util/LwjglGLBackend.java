@@ -0,0 +1,414 @@
+package com.rtxmod.util;
+
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL46;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The real backend, every call goes to the context current on the render thread
+ */
+final class LwjglGLBackend extends GLBackend {
+    
+    @Override
+    public String getString(int name) {
+        return GL46.glGetString(name);
+    }
+    
+    @Override
+    public String getStringi(int name, int index) {
+        return GL46.glGetStringi(name, index);
+    }
+    
+    @Override
+    public int getInteger(int pname) {
+        return GL46.glGetInteger(pname);
+    }
+    
+    @Override
+    public void getIntegerv(int pname, int[] params) {
+        GL46.glGetIntegerv(pname, params);
+    }
+    
+    @Override
+    public boolean maxShaderCompilerThreads(int count) {
+        GLCapabilities caps = GL.getCapabilities();
+        if (caps.GL_KHR_parallel_shader_compile) {
+            KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(count);
+            return true;
+        }
+        if (caps.GL_ARB_parallel_shader_compile) {
+            ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(count);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public void useProgram(int program) {
+        GL46.glUseProgram(program);
+    }
+    
+    @Override
+    public void bindTextureUnit(int unit, int texture) {
+        GL46.glBindTextureUnit(unit, texture);
+    }
+    
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+        GL46.glBindImageTexture(unit, texture, level, layered, layer, access, format);
+    }
+    
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        GL46.glBindBuffer(target, buffer);
+    }
+    
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        GL46.glBindBufferBase(target, index, buffer);
+    }
+    
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+        GL46.glBindFramebuffer(target, framebuffer);
+    }
+    
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+        GL46.glViewport(x, y, width, height);
+    }
+    
+    @Override
+    public void programUniform1i(int program, int location, int value) {
+        GL46.glProgramUniform1i(program, location, value);
+    }
+    
+    @Override
+    public void programUniform1f(int program, int location, float value) {
+        GL46.glProgramUniform1f(program, location, value);
+    }
+    
+    @Override
+    public void programUniform2f(int program, int location, float x, float y) {
+        GL46.glProgramUniform2f(program, location, x, y);
+    }
+    
+    @Override
+    public void programUniform3f(int program, int location, float x, float y, float z) {
+        GL46.glProgramUniform3f(program, location, x, y, z);
+    }
+    
+    @Override
+    public void programUniform4f(int program, int location, float x, float y, float z, float w) {
+        GL46.glProgramUniform4f(program, location, x, y, z, w);
+    }
+    
+    @Override
+    public void programUniform1iv(int program, int location, int[] values) {
+        GL46.glProgramUniform1iv(program, location, values);
+    }
+    
+    @Override
+    public void programUniform1fv(int program, int location, float[] values) {
+        GL46.glProgramUniform1fv(program, location, values);
+    }
+    
+    @Override
+    public void programUniform3fv(int program, int location, float[] values) {
+        GL46.glProgramUniform3fv(program, location, values);
+    }
+    
+    @Override
+    public void programUniformMatrix3fv(int program, int location, boolean transpose, float[] values) {
+        GL46.glProgramUniformMatrix3fv(program, location, transpose, values);
+    }
+    
+    @Override
+    public void programUniformMatrix4fv(int program, int location, boolean transpose, float[] values) {
+        GL46.glProgramUniformMatrix4fv(program, location, transpose, values);
+    }
+    
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        GL46.glDispatchCompute(groupsX, groupsY, groupsZ);
+    }
+    
+    @Override
+    public void memoryBarrier(int barriers) {
+        GL46.glMemoryBarrier(barriers);
+    }
+    
+    @Override
+    public void copyImageSubData(int srcName, int srcTarget, int srcLevel, int srcX, int srcY, int srcZ,
+                                 int dstName, int dstTarget, int dstLevel, int dstX, int dstY, int dstZ,
+                                 int width, int height, int depth) {
+        GL46.glCopyImageSubData(srcName, srcTarget, srcLevel, srcX, srcY, srcZ,
+            dstName, dstTarget, dstLevel, dstX, dstY, dstZ, width, height, depth);
+    }
+    
+    @Override
+    public int createTextures(int target) {
+        return GL46.glCreateTextures(target);
+    }
+    
+    @Override
+    public void textureStorage2D(int texture, int levels, int internalFormat, int width, int height) {
+        GL46.glTextureStorage2D(texture, levels, internalFormat, width, height);
+    }
+    
+    @Override
+    public void textureParameteri(int texture, int pname, int param) {
+        GL46.glTextureParameteri(texture, pname, param);
+    }
+    
+    @Override
+    public void clearTexImage(int texture, int level, int format, int type, float[] data) {
+        GL46.glClearTexImage(texture, level, format, type, data);
+    }
+    
+    @Override
+    public void clearTexImage(int texture, int level, int format, int type, int[] data) {
+        GL46.glClearTexImage(texture, level, format, type, data);
+    }
+    
+    @Override
+    public void getTextureImage(int texture, int level, int format, int type, int bufferSize, long pixelsOffset) {
+        GL46.glGetTextureImage(texture, level, format, type, bufferSize, pixelsOffset);
+    }
+    
+    @Override
+    public void deleteTextures(int texture) {
+        GL46.glDeleteTextures(texture);
+    }
+    
+    @Override
+    public int genFramebuffers() {
+        return GL46.glGenFramebuffers();
+    }
+    
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+        GL46.glFramebufferTexture2D(target, attachment, textureTarget, texture, level);
+    }
+    
+    @Override
+    public void drawBuffers(int[] buffers) {
+        GL46.glDrawBuffers(buffers);
+    }
+    
+    @Override
+    public int checkFramebufferStatus(int target) {
+        return GL46.glCheckFramebufferStatus(target);
+    }
+    
+    @Override
+    public void clearBufferfv(int buffer, int drawBuffer, float[] value) {
+        GL46.glClearBufferfv(buffer, drawBuffer, value);
+    }
+    
+    @Override
+    public void blitNamedFramebuffer(int readFramebuffer, int drawFramebuffer,
+                                     int srcX0, int srcY0, int srcX1, int srcY1,
+                                     int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        GL46.glBlitNamedFramebuffer(readFramebuffer, drawFramebuffer,
+            srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+    
+    @Override
+    public void deleteFramebuffers(int framebuffer) {
+        GL46.glDeleteFramebuffers(framebuffer);
+    }
+    
+    @Override
+    public void deleteRenderbuffers(int renderbuffer) {
+        GL46.glDeleteRenderbuffers(renderbuffer);
+    }
+    
+    @Override
+    public int genBuffers() {
+        return GL46.glGenBuffers();
+    }
+    
+    @Override
+    public void bufferData(int target, long size, int usage) {
+        GL46.glBufferData(target, size, usage);
+    }
+    
+    @Override
+    public void bufferData(int target, int[] data, int usage) {
+        GL46.glBufferData(target, data, usage);
+    }
+    
+    @Override
+    public void bufferData(int target, float[] data, int usage) {
+        GL46.glBufferData(target, data, usage);
+    }
+    
+    @Override
+    public ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+        return GL46.glMapBufferRange(target, offset, length, access);
+    }
+    
+    @Override
+    public boolean unmapBuffer(int target) {
+        return GL46.glUnmapBuffer(target);
+    }
+    
+    @Override
+    public void deleteBuffers(int buffer) {
+        GL46.glDeleteBuffers(buffer);
+    }
+    
+    @Override
+    public long fenceSync(int condition, int flags) {
+        return GL46.glFenceSync(condition, flags);
+    }
+    
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeout) {
+        return GL46.glClientWaitSync(sync, flags, timeout);
+    }
+    
+    @Override
+    public void deleteSync(long sync) {
+        GL46.glDeleteSync(sync);
+    }
+    
+    @Override
+    public void genQueries(int[] queries) {
+        GL46.glGenQueries(queries);
+    }
+    
+    @Override
+    public void queryCounter(int query, int target) {
+        GL46.glQueryCounter(query, target);
+    }
+    
+    @Override
+    public int getQueryObjecti(int query, int pname) {
+        return GL46.glGetQueryObjecti(query, pname);
+    }
+    
+    @Override
+    public long getQueryObjectui64(int query, int pname) {
+        return GL46.glGetQueryObjectui64(query, pname);
+    }
+    
+    @Override
+    public void deleteQueries(int[] queries) {
+        GL46.glDeleteQueries(queries);
+    }
+    
+    @Override
+    public int createShader(int type) {
+        return GL46.glCreateShader(type);
+    }
+    
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        GL46.glShaderSource(shader, source);
+    }
+    
+    @Override
+    public void compileShader(int shader) {
+        GL46.glCompileShader(shader);
+    }
+    
+    @Override
+    public int getShaderi(int shader, int pname) {
+        return GL46.glGetShaderi(shader, pname);
+    }
+    
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return GL46.glGetShaderInfoLog(shader);
+    }
+    
+    @Override
+    public void deleteShader(int shader) {
+        GL46.glDeleteShader(shader);
+    }
+    
+    @Override
+    public int createProgram() {
+        return GL46.glCreateProgram();
+    }
+    
+    @Override
+    public void attachShader(int program, int shader) {
+        GL46.glAttachShader(program, shader);
+    }
+    
+    @Override
+    public void detachShader(int program, int shader) {
+        GL46.glDetachShader(program, shader);
+    }
+    
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+        GL46.glProgramParameteri(program, pname, value);
+    }
+    
+    @Override
+    public void linkProgram(int program) {
+        GL46.glLinkProgram(program);
+    }
+    
+    @Override
+    public void validateProgram(int program) {
+        GL46.glValidateProgram(program);
+    }
+    
+    @Override
+    public int getProgrami(int program, int pname) {
+        return GL46.glGetProgrami(program, pname);
+    }
+    
+    @Override
+    public void getProgramiv(int program, int pname, int[] params) {
+        GL46.glGetProgramiv(program, pname, params);
+    }
+    
+    @Override
+    public String getProgramInfoLog(int program) {
+        return GL46.glGetProgramInfoLog(program);
+    }
+    
+    @Override
+    public String getActiveUniform(int program, int index, int[] size, int[] type) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer sizeBuffer = stack.mallocInt(1);
+            IntBuffer typeBuffer = stack.mallocInt(1);
+            String name = GL46.glGetActiveUniform(program, index, sizeBuffer, typeBuffer);
+            size[0] = sizeBuffer.get(0);
+            type[0] = typeBuffer.get(0);
+            return name;
+        }
+    }
+    
+    @Override
+    public int getUniformLocation(int program, CharSequence name) {
+        return GL46.glGetUniformLocation(program, name);
+    }
+    
+    @Override
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+        GL46.glProgramBinary(program, binaryFormat, binary);
+    }
+    
+    @Override
+    public void getProgramBinary(int program, int[] binaryFormat, ByteBuffer binary) {
+        GL46.glGetProgramBinary(program, (int[]) null, binaryFormat, binary);
+    }
+    
+    @Override
+    public void deleteProgram(int program) {
+        GL46.glDeleteProgram(program);
+    }
+}
@@ -1,9 +1,11 @@
 package com.rtxmod.util;
 
 import com.rtxmod.RTXMod;
-import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.ATIMeminfo;
 import org.lwjgl.opengl.GL46;
-import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRShaderSubgroup;
+import org.lwjgl.opengl.NVShaderSubgroupPartitioned;
+import org.lwjgl.opengl.NVXGPUMemoryInfo;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -13,6 +15,8 @@ import java.util.Set;
  */
 public class RTXCapabilities {
     
+    private final GLBackend gl = GLBackend.get();
+    
     private boolean hardwareRayTracingSupported = false;
     private boolean nvRayTracingSupported = false;
     private boolean amdRayTracingSupported = false;
@@ -23,6 +27,21 @@ public class RTXCapabilities {
     private String gpuRenderer = "Unknown";
     private String openglVersion = "Unknown";
     
+    // Video memory queries, -1 when the driver exposes neither extension
+    private boolean nvxMemoryInfoSupported = false;
+    private boolean atiMeminfoSupported = false;
+    private int dedicatedVideoMemoryMB = -1;
+    private final int[] atiTextureMemory = new int[4]; // reused, the budget check polls every few frames
+    
+    // Shader feature profile, picks the kernel variants compiled for this GPU
+    private int subgroupSize = 0;
+    private int subgroupFeatures = 0; // GL_SUBGROUP_FEATURE_*_BIT_KHR usable from compute shaders
+    private boolean subgroupPartitionedSupported = false;
+    private boolean int64Supported = false;
+    private boolean halfFloatSupported = false;
+    private boolean bindlessTextureSupported = false;
+    private boolean spirvSupported = false;
+    
     private Set<String> supportedExtensions = new HashSet<>();
     
     public RTXCapabilities() {
@@ -31,37 +50,38 @@ public class RTXCapabilities {
     
     private void checkCapabilities() {
         try {
-            GLCapabilities caps = GL.getCapabilities();
-            
             // Get GPU information
-            gpuVendor = GL46.glGetString(GL46.GL_VENDOR);
-            gpuRenderer = GL46.glGetString(GL46.GL_RENDERER);
-            openglVersion = GL46.glGetString(GL46.GL_VERSION);
+            gpuVendor = gl.getString(GL46.GL_VENDOR);
+            gpuRenderer = gl.getString(GL46.GL_RENDERER);
+            openglVersion = gl.getString(GL46.GL_VERSION);
             
             RTXMod.LOGGER.info("GPU Vendor: {}", gpuVendor);
             RTXMod.LOGGER.info("GPU Renderer: {}", gpuRenderer);
             RTXMod.LOGGER.info("OpenGL Version: {}", openglVersion);
             
             // Get supported extensions
-            int numExtensions = GL46.glGetInteger(GL46.GL_NUM_EXTENSIONS);
+            int numExtensions = gl.getInteger(GL46.GL_NUM_EXTENSIONS);
             for (int i = 0; i < numExtensions; i++) {
-                String extension = GL46.glGetStringi(GL46.GL_EXTENSIONS, i);
+                String extension = gl.getStringi(GL46.GL_EXTENSIONS, i);
                 supportedExtensions.add(extension);
             }
             
+            queryVideoMemory();
+            queryShaderFeatures();
+            
             // Check for NVIDIA RTX support
             if (gpuVendor.toLowerCase().contains("nvidia")) {
-                checkNvidiaRTXSupport(caps);
+                checkNvidiaRTXSupport();
             }
             
             // Check for AMD RDNA ray tracing support  
             if (gpuVendor.toLowerCase().contains("amd")) {
-                checkAMDRayTracingSupport(caps);
+                checkAMDRayTracingSupport();
             }
             
             // Check for Intel Arc ray tracing support
             if (gpuVendor.toLowerCase().contains("intel")) {
-                checkIntelRayTracingSupport(caps);
+                checkIntelRayTracingSupport();
             }
             
             // Check for Vulkan ray tracing support
@@ -73,20 +93,76 @@ public class RTXCapabilities {
                                         intelRayTracingSupported;
             
             logCapabilities();
-            
+        
         } catch (Exception e) {
             RTXMod.LOGGER.error("Error checking RTX capabilities: ", e);
         }
     }
     
-    private void checkNvidiaRTXSupport(GLCapabilities caps) {
+    private void queryVideoMemory() {
+        nvxMemoryInfoSupported = supportedExtensions.contains("GL_NVX_gpu_memory_info");
+        atiMeminfoSupported = supportedExtensions.contains("GL_ATI_meminfo");
+        
+        if (nvxMemoryInfoSupported) {
+            dedicatedVideoMemoryMB = gl.getInteger(NVXGPUMemoryInfo.GL_GPU_MEMORY_INFO_DEDICATED_VIDMEM_NVX) / 1024;
+        } else if (atiMeminfoSupported) {
+            // No total on AMD, free texture memory at startup is the closest estimate
+            dedicatedVideoMemoryMB = getAvailableVideoMemoryMB();
+        }
+        
+        RTXMod.LOGGER.info("Dedicated video memory: {}", 
+            dedicatedVideoMemoryMB >= 0 ? dedicatedVideoMemoryMB + " MB" : "unknown");
+    }
+    
+    private void queryShaderFeatures() {
+        // Subgroup ops only matter to us in compute shaders, where every kernel runs
+        if (supportedExtensions.contains("GL_KHR_shader_subgroup")) {
+            int stages = gl.getInteger(KHRShaderSubgroup.GL_SUBGROUP_SUPPORTED_STAGES_KHR);
+            if ((stages & GL46.GL_COMPUTE_SHADER_BIT) != 0) {
+                subgroupSize = gl.getInteger(KHRShaderSubgroup.GL_SUBGROUP_SIZE_KHR);
+                subgroupFeatures = gl.getInteger(KHRShaderSubgroup.GL_SUBGROUP_SUPPORTED_FEATURES_KHR);
+            }
+        }
+        subgroupPartitionedSupported = supportedExtensions.contains("GL_NV_shader_subgroup_partitioned")
+            && hasSubgroupFeature(NVShaderSubgroupPartitioned.GL_SUBGROUP_FEATURE_PARTITIONED_BIT_NV)
+            && supportsSubgroupBallot();
+        
+        int64Supported = supportedExtensions.contains("GL_ARB_gpu_shader_int64");
+        halfFloatSupported = supportedExtensions.contains("GL_AMD_gpu_shader_half_float")
+            || supportedExtensions.contains("GL_NV_gpu_shader5");
+        bindlessTextureSupported = supportedExtensions.contains("GL_ARB_bindless_texture");
+        int major = gl.getInteger(GL46.GL_MAJOR_VERSION);
+        int minor = gl.getInteger(GL46.GL_MINOR_VERSION);
+        spirvSupported = major > 4 || (major == 4 && minor >= 6) || supportedExtensions.contains("GL_ARB_gl_spirv");
+    }
+    
+    private boolean hasSubgroupFeature(int featureBit) {
+        return (subgroupFeatures & featureBit) != 0;
+    }
+    
+    // Queries the driver, so callers should not do this every frame
+    public int getAvailableVideoMemoryMB() {
+        if (nvxMemoryInfoSupported) {
+            return gl.getInteger(NVXGPUMemoryInfo.GL_GPU_MEMORY_INFO_CURRENT_AVAILABLE_VIDMEM_NVX) / 1024;
+        }
+        if (atiMeminfoSupported) {
+            gl.getIntegerv(ATIMeminfo.GL_TEXTURE_FREE_MEMORY_ATI, atiTextureMemory);
+            return atiTextureMemory[0] / 1024;
+        }
+        return -1;
+    }
+    
+    public int getDedicatedVideoMemoryMB() {
+        return dedicatedVideoMemoryMB;
+    }
+    
+    private void checkNvidiaRTXSupport() {
         // Check for RTX-specific extensions
         boolean hasRTXExtensions = 
             supportedExtensions.contains("GL_NV_ray_tracing") ||
             supportedExtensions.contains("GL_NVX_ray_tracing") ||
-            supportedExtensions.contains("GL_NV_mesh_shader") ||
-            caps.GL_NV_ray_tracing;
-            
+            supportedExtensions.contains("GL_NV_mesh_shader");
+        
         // Check GPU model for RTX/GTX series
         String renderer = gpuRenderer.toLowerCase();
         boolean isRTXGPU = renderer.contains("rtx") || 
@@ -107,7 +183,7 @@ public class RTXCapabilities {
             nvRayTracingSupported, isRTXGPU, hasRTXExtensions);
     }
     
-    private void checkAMDRayTracingSupport(GLCapabilities caps) {
+    private void checkAMDRayTracingSupport() {
         // Check for AMD RDNA2/RDNA3 ray tracing support
         String renderer = gpuRenderer.toLowerCase();
         boolean isRDNA2Plus = renderer.contains("rx 6") || 
@@ -126,7 +202,7 @@ public class RTXCapabilities {
             amdRayTracingSupported, isRDNA2Plus, hasRayTracingExtensions);
     }
     
-    private void checkIntelRayTracingSupport(GLCapabilities caps) {
+    private void checkIntelRayTracingSupport() {
         // Check for Intel Arc ray tracing support
         String renderer = gpuRenderer.toLowerCase();
         boolean isArcGPU = renderer.contains("arc") || 
@@ -158,6 +234,11 @@ public class RTXCapabilities {
         RTXMod.LOGGER.info("AMD Ray Tracing: {}", amdRayTracingSupported);
         RTXMod.LOGGER.info("Intel Ray Tracing: {}", intelRayTracingSupported);
         RTXMod.LOGGER.info("Vulkan Ray Tracing: {}", vulkanRayTracingSupported);
+        RTXMod.LOGGER.info("Subgroups: {} (arithmetic: {}, ballot: {}, shuffle: {}, partitioned: {})",
+            subgroupSize > 0 ? "size " + subgroupSize : "none",
+            supportsSubgroupArithmetic(), supportsSubgroupBallot(), supportsSubgroupShuffle(), subgroupPartitionedSupported);
+        RTXMod.LOGGER.info("Int64: {}, Half float: {}, Bindless textures: {}, SPIR-V: {}",
+            int64Supported, halfFloatSupported, bindlessTextureSupported, spirvSupported);
         
         // Log key extensions for debugging
         RTXMod.LOGGER.debug("Key extensions found:");
@@ -207,6 +288,11 @@ public class RTXCapabilities {
         return openglVersion;
     }
     
+    // Changes whenever the GPU or its driver does
+    public String getDriverSignature() {
+        return gpuVendor + "|" + gpuRenderer + "|" + openglVersion;
+    }
+    
     public Set<String> getSupportedExtensions() {
         return new HashSet<>(supportedExtensions);
     }
@@ -236,6 +322,46 @@ public class RTXCapabilities {
         return nvRayTracingSupported && gpuRenderer.toLowerCase().contains("rtx");
     }
     
+    // Subgroup ops in compute shaders, each implies the basic set
+    public int getSubgroupSize() {
+        return subgroupSize;
+    }
+    
+    public boolean supportsSubgroupArithmetic() {
+        return hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_BASIC_BIT_KHR)
+            && hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_ARITHMETIC_BIT_KHR);
+    }
+    
+    public boolean supportsSubgroupBallot() {
+        return hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_BASIC_BIT_KHR)
+            && hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_BALLOT_BIT_KHR);
+    }
+    
+    public boolean supportsSubgroupShuffle() {
+        return hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_BASIC_BIT_KHR)
+            && hasSubgroupFeature(KHRShaderSubgroup.GL_SUBGROUP_FEATURE_SHUFFLE_BIT_KHR);
+    }
+    
+    public boolean supportsSubgroupPartitioned() {
+        return subgroupPartitionedSupported;
+    }
+    
+    public boolean supportsInt64() {
+        return int64Supported;
+    }
+    
+    public boolean supportsHalfFloat() {
+        return halfFloatSupported;
+    }
+    
+    public boolean supportsBindlessTextures() {
+        return bindlessTextureSupported;
+    }
+    
+    public boolean supportsSpirV() {
+        return spirvSupported;
+    }
+    
     public boolean supportsFSR() {
         // AMD FSR can work on various GPUs, but works best on RDNA+
         return amdRayTracingSupported || nvRayTracingSupported;
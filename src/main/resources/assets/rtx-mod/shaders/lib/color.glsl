@@ -0,0 +1,20 @@
+// Color helpers shared by the denoiser, post-processing, upscaler and auto-exposure passes.
+
+// Rec. 709 luminance of a linear color
+float luminance(vec3 color) {
+    return dot(color, vec3(0.2126, 0.7152, 0.0722));
+}
+
+vec3 rgbToYCoCg(vec3 c) {
+    return vec3(
+         0.25 * c.r + 0.5 * c.g + 0.25 * c.b,
+         0.5  * c.r             - 0.5  * c.b,
+        -0.25 * c.r + 0.5 * c.g - 0.25 * c.b);
+}
+
+vec3 yCoCgToRgb(vec3 c) {
+    return vec3(
+        c.x + c.y - c.z,
+        c.x       + c.z,
+        c.x - c.y - c.z);
+}
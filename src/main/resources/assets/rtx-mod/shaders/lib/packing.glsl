@@ -0,0 +1,80 @@
+// G-buffer pack and unpack helpers, included by every pass that touches the G-buffer.
+// RTX_GBUFFER_COMPACT selects the compact layout (see GBufferLayout.java):
+//   normal   : octahedral encoding in RG16_SNORM
+//   material : roughness, metallic, ao, emission as unorm8 in one R32UI word
+
+vec2 octWrap(vec2 v) {
+    return (1.0 - abs(v.yx)) * vec2(v.x >= 0.0 ? 1.0 : -1.0, v.y >= 0.0 ? 1.0 : -1.0);
+}
+
+// Unit vector to [-1, 1]^2
+vec2 octEncode(vec3 n) {
+    n /= abs(n.x) + abs(n.y) + abs(n.z);
+    return n.z >= 0.0 ? n.xy : octWrap(n.xy);
+}
+
+vec3 octDecode(vec2 e) {
+    vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+    float t = clamp(-n.z, 0.0, 1.0);
+    n.xy += vec2(n.x >= 0.0 ? -t : t, n.y >= 0.0 ? -t : t);
+    return normalize(n);
+}
+
+uint packMaterial(vec4 material) {
+    return packUnorm4x8(clamp(material, 0.0, 1.0));
+}
+
+vec4 unpackMaterial(uint word) {
+    return unpackUnorm4x8(word);
+}
+
+#ifdef RTX_GBUFFER_COMPACT
+
+#define RTX_NORMAL_IMAGE_FORMAT rg16_snorm
+#define RTX_MATERIAL_IMAGE_FORMAT r32ui
+#define RTX_MATERIAL_SAMPLER usampler2D
+#define RTX_MATERIAL_IMAGE uimage2D
+#define RTX_MATERIAL_OUTPUT uvec4
+
+vec4 encodeGBufferNormal(vec3 n) {
+    return vec4(octEncode(normalize(n)), 0.0, 0.0);
+}
+
+vec3 decodeGBufferNormal(vec4 texel) {
+    return octDecode(texel.xy);
+}
+
+uvec4 encodeGBufferMaterial(vec4 material) {
+    return uvec4(packMaterial(material), 0u, 0u, 0u);
+}
+
+#else
+
+#define RTX_NORMAL_IMAGE_FORMAT rgba16f
+#define RTX_MATERIAL_IMAGE_FORMAT rgba8
+#define RTX_MATERIAL_SAMPLER sampler2D
+#define RTX_MATERIAL_IMAGE image2D
+#define RTX_MATERIAL_OUTPUT vec4
+
+vec4 encodeGBufferNormal(vec3 n) {
+    return vec4(normalize(n) * 0.5 + 0.5, 0.0);
+}
+
+vec3 decodeGBufferNormal(vec4 texel) {
+    return normalize(texel.xyz * 2.0 - 1.0);
+}
+
+vec4 encodeGBufferMaterial(vec4 material) {
+    return material;
+}
+
+#endif
+
+// Either sampler type decodes to roughness, metallic, ao, emission
+vec4 decodeGBufferMaterial(vec4 texel) {
+    return texel;
+}
+
+vec4 decodeGBufferMaterial(uvec4 texel) {
+    return unpackMaterial(texel.x);
+}
@@ -0,0 +1,10 @@
+// Local size of the per-pixel kernels. The workgroup tuner injects the fastest size it measured
+// for each kernel on this GPU, dispatches read the linked size back, so any size works.
+
+#ifndef RTX_LOCAL_SIZE_X
+#define RTX_LOCAL_SIZE_X 16
+#endif
+
+#ifndef RTX_LOCAL_SIZE_Y
+#define RTX_LOCAL_SIZE_Y 16
+#endif
@@ -0,0 +1,174 @@
+package com.rtxmod.rendering.profiling;
+
+import com.rtxmod.RTXMod;
+import com.rtxmod.config.RTXConfig;
+import com.rtxmod.rendering.RTXRenderer;
+import com.rtxmod.util.GLBackend;
+import com.rtxmod.util.HeadlessGLBackend;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Renders real frames through both pipelines against a headless GL backend and checks they allocate nothing once warm
+ */
+class SteadyStateAllocationTest {
+    
+    private static final int OUTPUT_WIDTH = 320;
+    private static final int OUTPUT_HEIGHT = 180;
+    
+    // Enough to load every class and let the JIT finish its tiers, whose transitions allocate on their own
+    private static final int WARMUP_FRAMES = 30_000;
+    private static final int MEASURED_FRAMES = 6000;
+    private static final int MEASURED_WINDOWS = 3;
+    private static final int MAX_BUILD_FRAMES = 100;
+    
+    private static final int SAMPLE_COUNT = 4096;
+    private static final int SPIKE_INTERVAL = 50;
+    
+    private final float[] frameTimesMs = new float[SAMPLE_COUNT];
+    private final long[] uploadBytes = new long[SAMPLE_COUNT];
+    
+    private final FrameStats frameStats = new FrameStats();
+    private final LogHistogram histogram = new LogHistogram(0.01, 20);
+    private final RTXConfig config = RTXConfig.createDefaults();
+    
+    private final HeadlessGLBackend gl = new HeadlessGLBackend();
+    private final Matrix4f viewMatrix = new Matrix4f().lookAt(0.0f, 80.0f, 0.0f, 16.0f, 72.0f, 16.0f, 0.0f, 1.0f, 0.0f);
+    private final Matrix4f projectionMatrix = new Matrix4f().perspective((float) Math.toRadians(70.0), 16.0f / 9.0f, 0.05f, 512.0f);
+    
+    @TempDir
+    Path cacheDirectory;
+    
+    private RTXRenderer renderer;
+    
+    @AfterEach
+    void tearDown() {
+        if (renderer != null) {
+            renderer.cleanup();
+        }
+        GLBackend.set(null);
+    }
+    
+    @Test
+    void steadyStateFramesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean = threadBean();
+        
+        // Debug logging formats its messages, the frame path is only allocation-free with it off
+        assumeFalse(RTXMod.LOGGER.isDebugEnabled(), "debug logging is enabled");
+        
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            frameTimesMs[i] = Math.max(0.1f, 6.0f + (float) random.nextGaussian() * 0.5f);
+            uploadBytes[i] = random.nextInt(4) == 0 ? random.nextInt(1 << 20) : 0;
+        }
+        
+        // Every pass runs: trace, accumulation, denoiser, histogram exposure and the upscaler
+        config.setRayTracingEnabled(true);
+        config.setDenoisingEnabled(true);
+        config.setAutoExposureEnabled(true);
+        config.setTemporalUpsamplingEnabled(true);
+        config.setRenderScale(50);
+        config.setAutoTuneEnabled(false);
+        config.setShaderCacheEnabled(false);
+        
+        GLBackend.set(gl);
+        renderer = new RTXRenderer(config, cacheDirectory, new FixedOutput());
+        renderer.initialize();
+        assertTrue(renderer.isInitialized(), "renderer failed to initialize");
+        
+        // One program builds per frame without parallel compile
+        int frame = 0;
+        while (!renderer.getShaderManager().isReady() && frame < MAX_BUILD_FRAMES) {
+            runFrame(frame++);
+        }
+        assertTrue(renderer.getShaderManager().isReady(), "shaders did not build");
+        
+        config.addListener(setting -> fail("unchanged setter notified " + setting));
+        
+        runFrames(frame, WARMUP_FRAMES);
+        frame += WARMUP_FRAMES;
+        
+        // Each window crosses ten reports and many spikes, so any per-frame allocation shows up in every one of them
+        for (int window = 0; window < MEASURED_WINDOWS; window++) {
+            long dispatches = gl.getDispatchCount();
+            long uploads = gl.getUniformUploadCount();
+            long before = threadBean.getCurrentThreadAllocatedBytes();
+            runFrames(frame, MEASURED_FRAMES);
+            long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+            frame += MEASURED_FRAMES;
+            
+            assertTrue(gl.getDispatchCount() - dispatches >= MEASURED_FRAMES * 5L, "frames skipped their passes");
+            assertTrue(gl.getUniformUploadCount() > uploads, "no uniform was uploaded");
+            assertEquals(0L, allocated, "bytes allocated over " + MEASURED_FRAMES + " steady-state frames in window " + window);
+        }
+        
+        assertNotNull(frameStats.getLastSpike(), "no spike frame was detected");
+    }
+    
+    private void runFrames(int firstFrame, int count) {
+        for (int frame = firstFrame; frame < firstFrame + count; frame++) {
+            runFrame(frame);
+        }
+    }
+    
+    private void runFrame(int frame) {
+        renderer.render(viewMatrix, projectionMatrix, (frame % 20) / 20.0f);
+        renderer.present();
+        
+        float frameMs = frameTimesMs[frame & (SAMPLE_COUNT - 1)];
+        if (frame % SPIKE_INTERVAL == SPIKE_INTERVAL - 1) {
+            frameMs += 25.0f;
+        }
+        
+        frameStats.recordFrame(frameMs, renderer.getGpuProfiler(), uploadBytes[frame & (SAMPLE_COUNT - 1)]);
+        histogram.record(frameMs);
+        
+        config.setRenderScale(config.getRenderScale());
+        config.setTemporalUpsamplingEnabled(config.isTemporalUpsamplingEnabled());
+        config.setExposureCompensation(config.getExposureCompensation());
+        config.setRayTracingDistance(config.getRayTracingDistance());
+        config.setSamplesPerPixel(config.getSamplesPerPixel());
+    }
+    
+    private static com.sun.management.ThreadMXBean threadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported(),
+            "this JVM can't count per-thread allocations");
+        
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        return threadBean;
+    }
+    
+    private static final class FixedOutput implements RTXRenderer.OutputTarget {
+        @Override
+        public int getFramebufferId() {
+            return 0;
+        }
+        
+        @Override
+        public int getWidth() {
+            return OUTPUT_WIDTH;
+        }
+        
+        @Override
+        public int getHeight() {
+            return OUTPUT_HEIGHT;
+        }
+    }
+}
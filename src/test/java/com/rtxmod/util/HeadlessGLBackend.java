@@ -0,0 +1,446 @@
+package com.rtxmod.util;
+
+import org.lwjgl.opengl.GL46;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for a GL 4.6 context: every object builds and links, and programs report the uniforms their sources declare
+ * Per-frame calls only count, so the renderer's own allocations are the only ones left to measure
+ */
+public class HeadlessGLBackend extends GLBackend {
+    
+    // Plain declarations, optionally behind a layout and memory qualifiers; blocks have no name after the type
+    private static final Pattern UNIFORM = Pattern.compile(
+        "^\\s*(?:layout\\s*\\([^)]*\\)\\s*)?uniform\\s+(?:(?:restrict|readonly|writeonly|coherent|volatile)\\s+)*(\\w+)\\s+(\\w+)\\s*(\\[[^\\]]*\\])?\\s*;",
+        Pattern.MULTILINE);
+    
+    private static final int[] LOCAL_SIZE = {8, 8, 1};
+    
+    private int nextId = 1;
+    
+    private final Map<Integer, String> shaderSources = new HashMap<>();
+    private final Map<Integer, List<Integer>> attachedShaders = new HashMap<>();
+    private final Map<Integer, List<String>> programUniforms = new HashMap<>();
+    private final Map<Integer, List<Integer>> programUniformTypes = new HashMap<>();
+    
+    private long dispatchCount = 0;
+    private long uniformUploadCount = 0;
+    
+    public long getDispatchCount() {
+        return dispatchCount;
+    }
+    
+    public long getUniformUploadCount() {
+        return uniformUploadCount;
+    }
+    
+    @Override
+    public String getString(int name) {
+        return switch (name) {
+            case GL46.GL_VENDOR -> "Headless";
+            case GL46.GL_RENDERER -> "Headless GL";
+            case GL46.GL_VERSION -> "4.6.0 Headless";
+            default -> "";
+        };
+    }
+    
+    @Override
+    public String getStringi(int name, int index) {
+        return "";
+    }
+    
+    @Override
+    public int getInteger(int pname) {
+        return switch (pname) {
+            case GL46.GL_MAJOR_VERSION -> 4;
+            case GL46.GL_MINOR_VERSION -> 6;
+            default -> 0;
+        };
+    }
+    
+    @Override
+    public void getIntegerv(int pname, int[] params) {
+        params[0] = getInteger(pname);
+    }
+    
+    @Override
+    public boolean maxShaderCompilerThreads(int count) {
+        return false;
+    }
+    
+    @Override
+    public void useProgram(int program) {
+    }
+    
+    @Override
+    public void bindTextureUnit(int unit, int texture) {
+    }
+    
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+    }
+    
+    @Override
+    public void bindBuffer(int target, int buffer) {
+    }
+    
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+    }
+    
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+    }
+    
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+    }
+    
+    @Override
+    public void programUniform1i(int program, int location, int value) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform1f(int program, int location, float value) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform2f(int program, int location, float x, float y) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform3f(int program, int location, float x, float y, float z) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform4f(int program, int location, float x, float y, float z, float w) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform1iv(int program, int location, int[] values) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform1fv(int program, int location, float[] values) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniform3fv(int program, int location, float[] values) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniformMatrix3fv(int program, int location, boolean transpose, float[] values) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void programUniformMatrix4fv(int program, int location, boolean transpose, float[] values) {
+        uniformUploadCount++;
+    }
+    
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        dispatchCount++;
+    }
+    
+    @Override
+    public void memoryBarrier(int barriers) {
+    }
+    
+    @Override
+    public void copyImageSubData(int srcName, int srcTarget, int srcLevel, int srcX, int srcY, int srcZ,
+                                 int dstName, int dstTarget, int dstLevel, int dstX, int dstY, int dstZ,
+                                 int width, int height, int depth) {
+    }
+    
+    @Override
+    public int createTextures(int target) {
+        return nextId++;
+    }
+    
+    @Override
+    public void textureStorage2D(int texture, int levels, int internalFormat, int width, int height) {
+    }
+    
+    @Override
+    public void textureParameteri(int texture, int pname, int param) {
+    }
+    
+    @Override
+    public void clearTexImage(int texture, int level, int format, int type, float[] data) {
+    }
+    
+    @Override
+    public void clearTexImage(int texture, int level, int format, int type, int[] data) {
+    }
+    
+    @Override
+    public void getTextureImage(int texture, int level, int format, int type, int bufferSize, long pixelsOffset) {
+    }
+    
+    @Override
+    public void deleteTextures(int texture) {
+    }
+    
+    @Override
+    public int genFramebuffers() {
+        return nextId++;
+    }
+    
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+    }
+    
+    @Override
+    public void drawBuffers(int[] buffers) {
+    }
+    
+    @Override
+    public int checkFramebufferStatus(int target) {
+        return GL46.GL_FRAMEBUFFER_COMPLETE;
+    }
+    
+    @Override
+    public void clearBufferfv(int buffer, int drawBuffer, float[] value) {
+    }
+    
+    @Override
+    public void blitNamedFramebuffer(int readFramebuffer, int drawFramebuffer,
+                                     int srcX0, int srcY0, int srcX1, int srcY1,
+                                     int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+    }
+    
+    @Override
+    public void deleteFramebuffers(int framebuffer) {
+    }
+    
+    @Override
+    public void deleteRenderbuffers(int renderbuffer) {
+    }
+    
+    @Override
+    public int genBuffers() {
+        return nextId++;
+    }
+    
+    @Override
+    public void bufferData(int target, long size, int usage) {
+    }
+    
+    @Override
+    public void bufferData(int target, int[] data, int usage) {
+    }
+    
+    @Override
+    public void bufferData(int target, float[] data, int usage) {
+    }
+    
+    // There is no pixel data to hand out, captures are dropped as failed maps
+    @Override
+    public ByteBuffer mapBufferRange(int target, long offset, long length, int access) {
+        return null;
+    }
+    
+    @Override
+    public boolean unmapBuffer(int target) {
+        return true;
+    }
+    
+    @Override
+    public void deleteBuffers(int buffer) {
+    }
+    
+    @Override
+    public long fenceSync(int condition, int flags) {
+        return nextId++;
+    }
+    
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeout) {
+        return GL46.GL_ALREADY_SIGNALED;
+    }
+    
+    @Override
+    public void deleteSync(long sync) {
+    }
+    
+    @Override
+    public void genQueries(int[] queries) {
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = nextId++;
+        }
+    }
+    
+    @Override
+    public void queryCounter(int query, int target) {
+    }
+    
+    @Override
+    public int getQueryObjecti(int query, int pname) {
+        return GL46.GL_TRUE;
+    }
+    
+    @Override
+    public long getQueryObjectui64(int query, int pname) {
+        return System.nanoTime();
+    }
+    
+    @Override
+    public void deleteQueries(int[] queries) {
+    }
+    
+    @Override
+    public int createShader(int type) {
+        return nextId++;
+    }
+    
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        shaderSources.put(shader, source.toString());
+    }
+    
+    @Override
+    public void compileShader(int shader) {
+    }
+    
+    @Override
+    public int getShaderi(int shader, int pname) {
+        return GL46.GL_TRUE;
+    }
+    
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return "";
+    }
+    
+    @Override
+    public void deleteShader(int shader) {
+        shaderSources.remove(shader);
+    }
+    
+    @Override
+    public int createProgram() {
+        int program = nextId++;
+        attachedShaders.put(program, new ArrayList<>());
+        return program;
+    }
+    
+    @Override
+    public void attachShader(int program, int shader) {
+        attachedShaders.get(program).add(shader);
+    }
+    
+    @Override
+    public void detachShader(int program, int shader) {
+        attachedShaders.get(program).remove((Integer) shader);
+    }
+    
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+    }
+    
+    // Every declared uniform counts as active, at a location matching its index
+    @Override
+    public void linkProgram(int program) {
+        List<String> names = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        for (int shader : attachedShaders.get(program)) {
+            Matcher matcher = UNIFORM.matcher(shaderSources.get(shader));
+            while (matcher.find()) {
+                String name = matcher.group(3) != null ? matcher.group(2) + "[0]" : matcher.group(2);
+                if (!names.contains(name)) {
+                    names.add(name);
+                    types.add(typeOf(matcher.group(1)));
+                }
+            }
+        }
+        programUniforms.put(program, names);
+        programUniformTypes.put(program, types);
+    }
+    
+    private static int typeOf(String glslType) {
+        return switch (glslType) {
+            case "float" -> GL46.GL_FLOAT;
+            case "int" -> GL46.GL_INT;
+            case "bool" -> GL46.GL_BOOL;
+            case "vec2" -> GL46.GL_FLOAT_VEC2;
+            case "vec3" -> GL46.GL_FLOAT_VEC3;
+            case "vec4" -> GL46.GL_FLOAT_VEC4;
+            case "mat3" -> GL46.GL_FLOAT_MAT3;
+            case "mat4" -> GL46.GL_FLOAT_MAT4;
+            case "image2D" -> GL46.GL_IMAGE_2D;
+            default -> GL46.GL_SAMPLER_2D;
+        };
+    }
+    
+    @Override
+    public void validateProgram(int program) {
+    }
+    
+    @Override
+    public int getProgrami(int program, int pname) {
+        return switch (pname) {
+            case GL46.GL_ACTIVE_UNIFORMS -> programUniforms.getOrDefault(program, List.of()).size();
+            case GL46.GL_LINK_STATUS, GL46.GL_VALIDATE_STATUS,
+                 KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR -> GL46.GL_TRUE;
+            default -> 0;
+        };
+    }
+    
+    @Override
+    public void getProgramiv(int program, int pname, int[] params) {
+        if (pname == GL46.GL_COMPUTE_WORK_GROUP_SIZE) {
+            System.arraycopy(LOCAL_SIZE, 0, params, 0, LOCAL_SIZE.length);
+        } else {
+            params[0] = getProgrami(program, pname);
+        }
+    }
+    
+    @Override
+    public String getProgramInfoLog(int program) {
+        return "";
+    }
+    
+    @Override
+    public String getActiveUniform(int program, int index, int[] size, int[] type) {
+        size[0] = 1;
+        type[0] = programUniformTypes.get(program).get(index);
+        return programUniforms.get(program).get(index);
+    }
+    
+    @Override
+    public int getUniformLocation(int program, CharSequence name) {
+        return programUniforms.get(program).indexOf(name.toString());
+    }
+    
+    @Override
+    public void programBinary(int program, int binaryFormat, ByteBuffer binary) {
+    }
+    
+    @Override
+    public void getProgramBinary(int program, int[] binaryFormat, ByteBuffer binary) {
+    }
+    
+    @Override
+    public void deleteProgram(int program) {
+        attachedShaders.remove(program);
+        programUniforms.remove(program);
+        programUniformTypes.remove(program);
+    }
+}